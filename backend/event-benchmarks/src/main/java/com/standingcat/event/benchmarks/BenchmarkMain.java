@@ -0,0 +1,32 @@
+package com.standingcat.event.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+//Entry point of benchmarks.jar. Same arguments as org.openjdk.jmh.Main, but unless -rf/-rff are given the results
+//are also written as JSON to jmh-results/<timestamp>.json, so every run leaves a file to compare the next one against.
+public class BenchmarkMain {
+    public static void main(String[] args) throws Exception {
+        List<String> jmhArgs = new ArrayList<>(List.of(args));
+        if (!jmhArgs.contains("-rf") && !jmhArgs.contains("-rff")) {
+            Path results = Path.of("jmh-results",
+                    LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".json");
+            createDirectories(results.getParent());
+            jmhArgs.addAll(List.of("-rf", "json", "-rff", results.toString()));
+        }
+        org.openjdk.jmh.Main.main(jmhArgs.toArray(String[]::new));
+    }
+
+    private static void createDirectories(Path dir) {
+        try {
+            Files.createDirectories(dir);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot create " + dir, e);
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.standingcat.event.benchmarks;
+
+import com.standingcat.event.EventApplication;
+import com.standingcat.event.model.Enrollment;
+import com.standingcat.event.model.Event;
+import com.standingcat.event.model.OutboundEmail;
+import com.standingcat.event.model.User;
+import com.standingcat.event.repository.EnrollmentRepository;
+import com.standingcat.event.repository.EventRepository;
+import com.standingcat.event.repository.OutboundEmailRepository;
+import com.standingcat.event.repository.UserRepository;
+import com.standingcat.event.service.EnrollmentService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+//EnrollmentService.enrollUserToEvent end to end: the whole application context on an in-memory H2 with the
+//migrations applied, seeded with users, events and existing enrollments so the indexes and unique checks work
+//on tables of a realistic size. Every invocation enrolls a user who is not yet in that event.
+//lookupFirstEnrollment runs the statements the service used before it went write-first (load the user and
+//the event, check for an existing enrollment, claim, insert, queue the email from the loaded rows) to compare with.
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class EnrollmentBenchmark {
+    private static final String SECRET = "c3RhbmRpbmdjYXQtZXZlbnQtYmVuY2htYXJrLXNlY3JldC1rZXktMzJieXRlcyE=";
+
+    @Param({"1000"})
+    private int events;
+
+    //already enrolled in a few events each, fill the enrollment table
+    @Param({"10000"})
+    private int seededUsers;
+
+    //who enrolls during the run, each of them can go to every event once
+    @Param({"2000"})
+    private int enrollingUsers;
+
+    private ConfigurableApplicationContext context;
+    private EnrollmentService enrollmentService;
+    private TransactionTemplate transactionTemplate;
+    private UserRepository userRepository;
+    private EventRepository eventRepository;
+    private EnrollmentRepository enrollmentRepository;
+    private OutboundEmailRepository outboundEmailRepository;
+    private long firstEventId;
+    private long firstEnrollingUserId;
+    private final AtomicLong next = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(EventApplication.class)
+                .properties(
+                        "server.port=0",
+                        "spring.datasource.url=jdbc:h2:mem:enrollment-benchmark-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1",
+                        "jwt.secret=" + SECRET,
+                        "admin.password=benchmark",
+                        "image.store=local",
+                        "image.store.local.dir=target/benchmark-uploads/images",
+                        "image.staging.dir=target/benchmark-uploads/staging",
+                        //the confirmation emails stay queued in the outbox, nothing is listening on SMTP
+                        "email.outbox.poll-interval=1h",
+                        "diagnostics.virtual-thread-pinning.enabled=false",
+                        "logging.level.root=WARN",
+                        "logging.level.request.timing=WARN")
+                .run();
+        enrollmentService = context.getBean(EnrollmentService.class);
+        transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        userRepository = context.getBean(UserRepository.class);
+        eventRepository = context.getBean(EventRepository.class);
+        enrollmentRepository = context.getBean(EnrollmentRepository.class);
+        outboundEmailRepository = context.getBean(OutboundEmailRepository.class);
+        seed(context.getBean(JdbcTemplate.class));
+    }
+
+    private void seed(JdbcTemplate jdbcTemplate) {
+        long firstUserId = insertUsers(jdbcTemplate, "seeded", seededUsers);
+        firstEnrollingUserId = insertUsers(jdbcTemplate, "enrolling", enrollingUsers);
+
+        List<Object[]> eventRows = new ArrayList<>(events);
+        for (int i = 0; i < events; i++) {
+            eventRows.add(new Object[]{"Event " + i, "Benchmark event " + i,
+                    Timestamp.valueOf(LocalDateTime.now().plusDays(1 + i % 90)), firstUserId});
+        }
+        jdbcTemplate.batchUpdate("""
+                INSERT INTO app_event (title, description, event_time, owner_id, capacity)
+                VALUES (?, ?, ?, ?, NULL)
+                """, eventRows);
+        firstEventId = jdbcTemplate.queryForObject(
+                "SELECT MIN(id) FROM app_event WHERE title = 'Event 0'", Long.class);
+
+        //five events per seeded user, spread over all of them
+        List<Object[]> enrollmentRows = new ArrayList<>();
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        for (int user = 0; user < seededUsers; user++) {
+            for (int j = 0; j < 5; j++) {
+                long eventId = firstEventId + (user * 5L + j) % events;
+                enrollmentRows.add(new Object[]{firstUserId + user, eventId, now});
+            }
+        }
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO enrollment (user_id, event_id, enrollment_time) VALUES (?, ?, ?)", enrollmentRows);
+        jdbcTemplate.update("""
+                UPDATE app_event
+                SET enrolled_count = (SELECT COUNT(*) FROM enrollment WHERE enrollment.event_id = app_event.id)
+                """);
+    }
+
+    private static long insertUsers(JdbcTemplate jdbcTemplate, String prefix, int count) {
+        List<Object[]> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            rows.add(new Object[]{prefix + i, "{noop}unused", prefix + i + "@example.com"});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO app_user (username, password, email) VALUES (?, ?, ?)", rows);
+        jdbcTemplate.batchUpdate("INSERT INTO user_roles (user_id, role) SELECT id, 'ROLE_USER' FROM app_user WHERE username = ?",
+                rows.stream().map(row -> new Object[]{row[0]}).toList());
+        return jdbcTemplate.queryForObject("SELECT id FROM app_user WHERE username = ?", Long.class, prefix + 0);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    //user-major so consecutive calls go to different events, like a busy catalogue rather than one rush
+    @Benchmark
+    public Object enrollUserToEvent() {
+        long n = nextPair();
+        return enrollmentService.enrollUserToEvent(userId(n), eventId(n)).getId();
+    }
+
+    @Benchmark
+    public Object lookupFirstEnrollment() {
+        long n = nextPair();
+        Long userId = userId(n);
+        Long eventId = eventId(n);
+        return transactionTemplate.execute(status -> {
+            User user = userRepository.findById(userId).orElseThrow();
+            Event event = eventRepository.findById(eventId).orElseThrow();
+            if (enrollmentRepository.existsByUserAndEvent(user, event) || eventRepository.claimSeat(eventId) == 0) {
+                throw new IllegalStateException("Pair " + userId + "/" + eventId + " can't be enrolled");
+            }
+            Enrollment enrollment = new Enrollment();
+            enrollment.setUser(user);
+            enrollment.setEvent(event);
+            enrollment.setEnrollmentTime(LocalDateTime.now());
+            Long id = enrollmentRepository.save(enrollment).getId();
+
+            OutboundEmail email = new OutboundEmail();
+            email.setRecipient(user.getEmail());
+            email.setSubject("Event Registration Confirmation");
+            email.setBody("Your registration to " + event.getTitle() + " has been confirmed.");
+            email.setCreatedAt(LocalDateTime.now());
+            email.setNextAttemptAt(email.getCreatedAt());
+            outboundEmailRepository.save(email);
+            return id;
+        });
+    }
+
+    private long nextPair() {
+        long n = next.getAndIncrement();
+        if (n >= (long) enrollingUsers * events) {
+            throw new IllegalStateException("Ran out of user/event pairs, raise enrollingUsers");
+        }
+        return n;
+    }
+
+    private long userId(long n) {
+        return firstEnrollingUserId + n / events;
+    }
+
+    private long eventId(long n) {
+        return firstEventId + n % events;
+    }
+}
@@ -0,0 +1,94 @@
+package com.standingcat.event.benchmarks;
+
+import com.standingcat.event.security.jwt.JwtUtil;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import javax.crypto.SecretKey;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+//What the JWT filter pays per request: the old three separate parses against one verify call, with and without the cache,
+//and what login pays to issue a token.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtBenchmark {
+    private static final String SECRET = "c3RhbmRpbmdjYXQtZXZlbnQtYmVuY2htYXJrLXNlY3JldC1rZXktMzJieXRlcyE=";
+
+    private final UserDetails user = User.withUsername("bench").password("").authorities("ROLE_USER").build();
+    private SecretKey key;
+    private JwtUtil uncached;
+    private JwtUtil cached;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        key = Keys.hmacShaKeyFor(Decoders.BASE64.decode(SECRET));
+        uncached = new JwtUtil(SECRET, 3_600_000, 0);
+        cached = new JwtUtil(SECRET, 3_600_000, 10_000);
+        token = cached.generateToken(user);
+        cached.verify(token);
+    }
+
+    //the filter before: extractUsername, extractRoles and validateToken each built a parser and parsed the token
+    @Benchmark
+    public void legacyTripleParse(Blackhole blackhole) {
+        blackhole.consume(parse().getSubject());
+        blackhole.consume(parse().get("roles"));
+        Claims claims = parse();
+        blackhole.consume(claims.getSubject().equals(user.getUsername()) && claims.getExpiration().after(new Date()));
+    }
+
+    //issued on every login
+    @Benchmark
+    public String generateToken() {
+        return cached.generateToken(user);
+    }
+
+    @Benchmark
+    public boolean validateTokenUncached() {
+        return uncached.validateToken(token, user);
+    }
+
+    @Benchmark
+    public boolean validateTokenCached() {
+        return cached.validateToken(token, user);
+    }
+
+    @Benchmark
+    public Object verifyUncached() {
+        return uncached.verify(token);
+    }
+
+    @Benchmark
+    public Object verifyCached() {
+        return cached.verify(token);
+    }
+
+    private Claims parse() {
+        return Jwts.parserBuilder()
+                .setSigningKey(key)
+                .build()
+                .parseClaimsJws(token)
+                .getBody();
+    }
+}
@@ -0,0 +1,101 @@
+package com.standingcat.event.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.standingcat.event.dto.EnrollmentResponse;
+import com.standingcat.event.dto.EventResponse;
+import com.standingcat.event.model.Enrollment;
+import com.standingcat.event.model.Event;
+import com.standingcat.event.model.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+//Turning entities into the response DTOs and writing them out, as the listing and enrollment endpoints do.
+//size is the number of rows in one response: a page of events, or the enrollments of one event.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResponseMappingBenchmark {
+    @Param({"20", "500"})
+    private int size;
+
+    //configured like the one Spring Boot gives the controllers (java.time support, no timestamps)
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private List<Event> events;
+    private List<Enrollment> enrollments;
+
+    @Setup
+    public void setUp() {
+        User owner = user(0);
+        Event event = event(0, owner);
+        events = new ArrayList<>(size);
+        enrollments = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            events.add(event(i, owner));
+
+            Enrollment enrollment = new Enrollment();
+            enrollment.setId((long) i);
+            enrollment.setEnrollmentTime(LocalDateTime.of(2025, 6, 1, 12, 0).plusSeconds(i));
+            enrollment.setUser(user(i + 1));
+            enrollment.setEvent(event);
+            enrollments.add(enrollment);
+        }
+    }
+
+    private static User user(int i) {
+        User user = new User();
+        user.setId((long) i);
+        user.setUsername("user" + i);
+        user.setEmail("user" + i + "@example.com");
+        return user;
+    }
+
+    private static Event event(int i, User owner) {
+        Event event = new Event();
+        event.setId((long) i);
+        event.setTitle("Event " + i);
+        event.setDescription("A description of event " + i + " long enough to look like the ones people actually write.");
+        event.setImageUrl("https://res.cloudinary.com/demo/image/upload/event_images/" + i + ".png");
+        event.setEventTime(LocalDateTime.of(2025, 9, 1, 18, 0).plusDays(i));
+        event.setOwner(owner);
+        event.setCapacity(100);
+        return event;
+    }
+
+    @Benchmark
+    public List<EventResponse> mapEvents() {
+        return events.stream().map(EventResponse::new).toList();
+    }
+
+    @Benchmark
+    public byte[] mapAndSerializeEvents() throws Exception {
+        return objectMapper.writeValueAsBytes(events.stream().map(EventResponse::new).toList());
+    }
+
+    @Benchmark
+    public List<EnrollmentResponse> mapEnrollments() {
+        return enrollments.stream().map(EnrollmentResponse::new).toList();
+    }
+
+    @Benchmark
+    public byte[] mapAndSerializeEnrollments() throws Exception {
+        return objectMapper.writeValueAsBytes(enrollments.stream().map(EnrollmentResponse::new).toList());
+    }
+}
@@ -2,14 +2,19 @@ package com.standingcat.event;
 
 import com.standingcat.event.model.User;
 import com.standingcat.event.service.UserService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class EventApplication {
+	private static final Logger log = LoggerFactory.getLogger(EventApplication.class);
 
 	@Value("${admin.password}")
 	private String adminPassword;
@@ -17,7 +22,6 @@ public class EventApplication {
 	public static void main(String[] args) {
 
 		SpringApplication.run(EventApplication.class, args);
-		System.out.println("Hello World");
 	}
 
 	//this bean is to create an initial admin account. Configure the password in the env.
@@ -31,9 +35,9 @@ public class EventApplication {
 				admin.setPassword(adminPassword);
 
 				userService.createAdminUser(admin);
-				System.out.println("Admin user created!");
+				log.info("Admin user created");
 			} else {
-				System.out.println("Admin already exists, skipping creation.");
+				log.info("Admin already exists, skipping creation");
 			}
 		};
 	}
@@ -0,0 +1,83 @@
+package com.standingcat.event.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+//When requests run on virtual threads, a blocking call inside a synchronized block (or native frame) pins the
+//carrier thread and the spike behaves like a small platform pool again. This listens to the JFR
+//jdk.VirtualThreadPinned event in-process, counts every pin over the threshold and logs each distinct call site once.
+@Component
+@ConditionalOnThreading(Threading.VIRTUAL)
+@ConditionalOnProperty(name = "diagnostics.virtual-thread-pinning.enabled", havingValue = "true", matchIfMissing = true)
+public class PinnedThreadMonitor {
+    private static final Logger log = LoggerFactory.getLogger(PinnedThreadMonitor.class);
+    private static final String PINNED = "jdk.VirtualThreadPinned";
+    private static final int FRAMES_LOGGED = 8;
+    private static final int MAX_SITES = 1000;
+
+    private final Duration threshold;
+    private final Counter pinned;
+    private final Set<String> reportedSites = ConcurrentHashMap.newKeySet();
+    private RecordingStream stream;
+
+    public PinnedThreadMonitor(@Value("${diagnostics.virtual-thread-pinning.threshold:20ms}") Duration threshold,
+                               MeterRegistry meterRegistry) {
+        this.threshold = threshold;
+        this.pinned = Counter.builder("jvm.threads.virtual.pinned")
+                .description("Virtual threads pinned to their carrier for longer than the threshold")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void start() {
+        stream = new RecordingStream();
+        stream.enable(PINNED).withThreshold(threshold).withStackTrace();
+        stream.onEvent(PINNED, this::onPinned);
+        stream.startAsync();
+    }
+
+    @PreDestroy
+    void stop() {
+        stream.close();
+    }
+
+    private void onPinned(RecordedEvent event) {
+        pinned.increment();
+        String site = callSite(event);
+        if (reportedSites.size() < MAX_SITES && reportedSites.add(site)) {
+            log.warn("Virtual thread pinned for {} ms at\n{}", event.getDuration().toMillis(), site);
+        }
+    }
+
+    private static String callSite(RecordedEvent event) {
+        if (event.getStackTrace() == null) {
+            return "<no stack trace>";
+        }
+        return event.getStackTrace().getFrames().stream()
+                .limit(FRAMES_LOGGED)
+                .map(PinnedThreadMonitor::frame)
+                .collect(Collectors.joining("\n"));
+    }
+
+    private static String frame(RecordedFrame frame) {
+        return "\tat " + frame.getMethod().getType().getName() + "." + frame.getMethod().getName()
+                + ":" + frame.getLineNumber();
+    }
+}
@@ -0,0 +1,60 @@
+package com.standingcat.event.config;
+
+//Timing record for the request on the current thread, started by RequestTimingFilter.
+//The handler interceptor marks the controller span and Hibernate's statement inspector counts SQL,
+//so whatever is left of the total is time spent in filters (security, JWT) and writing the response.
+public final class RequestTiming {
+    private static final ThreadLocal<RequestTiming> CURRENT = new ThreadLocal<>();
+
+    private final long startNanos = System.nanoTime();
+    private long handlerStartNanos;
+    private long handlerNanos;
+    private int sqlCount;
+
+    private RequestTiming() {
+    }
+
+    static RequestTiming start() {
+        RequestTiming timing = new RequestTiming();
+        CURRENT.set(timing);
+        return timing;
+    }
+
+    static void clear() {
+        CURRENT.remove();
+    }
+
+    static void handlerStarted() {
+        RequestTiming timing = CURRENT.get();
+        if (timing != null) {
+            timing.handlerStartNanos = System.nanoTime();
+        }
+    }
+
+    static void handlerFinished() {
+        RequestTiming timing = CURRENT.get();
+        if (timing != null && timing.handlerStartNanos != 0) {
+            timing.handlerNanos += System.nanoTime() - timing.handlerStartNanos;
+            timing.handlerStartNanos = 0;
+        }
+    }
+
+    static void statementExecuted() {
+        RequestTiming timing = CURRENT.get();
+        if (timing != null) {
+            timing.sqlCount++;
+        }
+    }
+
+    long totalMicros() {
+        return (System.nanoTime() - startNanos) / 1_000;
+    }
+
+    long handlerMicros() {
+        return handlerNanos / 1_000;
+    }
+
+    int sqlCount() {
+        return sqlCount;
+    }
+}
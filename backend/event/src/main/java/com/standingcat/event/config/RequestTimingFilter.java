@@ -0,0 +1,91 @@
+package com.standingcat.event.config;
+
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.UUID;
+
+//Outermost filter, so its total covers the security chain too. Writes one structured line per request on the
+//request.timing logger: method, path, status, total, filter and handler time (in microseconds) and SQL count.
+//Turn it off with logging.level.request.timing=WARN, nothing is measured then.
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class RequestTimingFilter extends OncePerRequestFilter {
+    private static final Logger log = LoggerFactory.getLogger("request.timing");
+    private static final String REQUEST_ID_HEADER = "X-Request-Id";
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        if (!log.isInfoEnabled()) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        String requestId = request.getHeader(REQUEST_ID_HEADER);
+        if (requestId == null || requestId.isBlank() || requestId.length() > 64) {
+            requestId = UUID.randomUUID().toString();
+        }
+        response.setHeader(REQUEST_ID_HEADER, requestId);
+        MDC.put("requestId", requestId);
+        RequestTiming timing = RequestTiming.start();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            RequestTiming.clear();
+            if (isAsyncStarted(request)) {
+                //streamed responses finish on another thread, log when they actually complete
+                String id = requestId;
+                request.getAsyncContext().addListener(new AsyncListener() {
+                    @Override
+                    public void onComplete(AsyncEvent event) {
+                        MDC.put("requestId", id);
+                        record(request, response, timing);
+                        MDC.remove("requestId");
+                    }
+
+                    @Override
+                    public void onTimeout(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onError(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onStartAsync(AsyncEvent event) {
+                    }
+                });
+            } else {
+                record(request, response, timing);
+            }
+            MDC.remove("requestId");
+        }
+    }
+
+    private static void record(HttpServletRequest request, HttpServletResponse response, RequestTiming timing) {
+        long totalMicros = timing.totalMicros();
+        long handlerMicros = timing.handlerMicros();
+        log.atInfo()
+                .addKeyValue("method", request.getMethod())
+                .addKeyValue("path", request.getRequestURI())
+                .addKeyValue("status", response.getStatus())
+                .addKeyValue("totalUs", totalMicros)
+                .addKeyValue("filterUs", totalMicros - handlerMicros)
+                .addKeyValue("handlerUs", handlerMicros)
+                .addKeyValue("sqlCount", timing.sqlCount())
+                .log("request completed");
+    }
+}
@@ -3,12 +3,19 @@ import org.springframework.http.HttpMethod;
 import org.springframework.security.config.Customizer;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 
+import com.standingcat.event.security.AuthenticatedUser;
+import com.standingcat.event.security.BoundedPasswordEncoder;
+import com.standingcat.event.security.TimedPasswordEncoder;
 import com.standingcat.event.security.jwt.JwtAuthenticationFilter;
 import com.standingcat.event.security.jwt.JwtUtil;
+import com.standingcat.event.security.jwt.PrincipalCache;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Profile;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import com.standingcat.event.repository.UserRepository;
+import com.standingcat.event.service.UserService;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -18,6 +25,7 @@ import org.springframework.security.config.annotation.method.configuration.Enabl
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
@@ -25,6 +33,10 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
+import java.time.Duration;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
 import static org.springframework.security.config.Customizer.withDefaults;
 
 @Configuration
@@ -33,17 +45,39 @@ import static org.springframework.security.config.Customizer.withDefaults;
 @Profile("!test")
 public class SecurityConfig {
     @Bean
-    public DebugRequestLoggingFilter debugRequestLoggingFilter() {
-        return new DebugRequestLoggingFilter();
+    public JwtAuthenticationFilter jwtAuthFilter(JwtUtil jwtUtil, PrincipalCache principalCache) {
+        return new JwtAuthenticationFilter(jwtUtil, principalCache);
     }
+    private static final Pattern BCRYPT_COST = Pattern.compile("^\\$2[aby]?\\$(\\d\\d)\\$");
 
+    //BCrypt at the configured strength, off the request threads (see BoundedPasswordEncoder)
     @Bean
-    public JwtAuthenticationFilter jwtAuthFilter(JwtUtil jwtUtil, UserDetailsService userDetailsService) {
-        return new JwtAuthenticationFilter(jwtUtil, userDetailsService);
+    public PasswordEncoder passwordEncoder(MeterRegistry meterRegistry,
+                                           @Value("${security.bcrypt.strength:10}") int strength,
+                                           @Value("${security.password-hashing.threads:0}") int threads,
+                                           @Value("${security.password-hashing.queue-capacity:200}") int queueCapacity,
+                                           @Value("${security.password-hashing.max-wait:5s}") Duration maxWait) {
+        PasswordEncoder bcrypt = new BCryptPasswordEncoder(strength) {
+            //stored hashes of any other cost, lower or higher, are re-hashed at the next successful login
+            @Override
+            public boolean upgradeEncoding(String encodedPassword) {
+                Matcher cost = BCRYPT_COST.matcher(encodedPassword == null ? "" : encodedPassword);
+                return cost.find() && Integer.parseInt(cost.group(1)) != strength;
+            }
+        };
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        return new BoundedPasswordEncoder(new TimedPasswordEncoder(bcrypt, meterRegistry),
+                poolSize, queueCapacity, maxWait, meterRegistry);
     }
+
+    //stores the new hash when upgradeEncoding asked for one during login
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public UserDetailsPasswordService userDetailsPasswordService(UserService userService) {
+        return (user, newPassword) -> {
+            userService.rehashPassword(user.getUsername(), newPassword);
+            Long id = user instanceof AuthenticatedUser authenticated ? authenticated.getId() : null;
+            return new AuthenticatedUser(id, user.getUsername(), newPassword, user.getAuthorities());
+        };
     }
 
     @Bean
@@ -51,22 +85,21 @@ public class SecurityConfig {
         return username -> {
             com.standingcat.event.model.User user = userRepository.findByUsername(username)
                     .orElseThrow(() -> new UsernameNotFoundException("User not found: " + username));
-            return org.springframework.security.core.userdetails.User.builder()
-                    .username(user.getUsername())
-                    .password(user.getPassword())
-                    .authorities(user.getRoles().stream()
+            //carries the id so the token issued at login can too
+            return new AuthenticatedUser(user.getId(), user.getUsername(), user.getPassword(),
+                    user.getRoles().stream()
                             .map(SimpleGrantedAuthority::new)
-                            .toList()
-                    )
-                    .build(); //roles have to be converted from Set<String> to String[]
+                            .toList());
         };
     }
 
     @Bean
-    public AuthenticationManager authenticationManager(UserDetailsService userDetailsService, PasswordEncoder passwordEncoder) {
+    public AuthenticationManager authenticationManager(UserDetailsService userDetailsService, PasswordEncoder passwordEncoder,
+                                                       UserDetailsPasswordService userDetailsPasswordService) {
         DaoAuthenticationProvider authenticationProvider = new DaoAuthenticationProvider();
         authenticationProvider.setUserDetailsService(userDetailsService);
         authenticationProvider.setPasswordEncoder(passwordEncoder);
+        authenticationProvider.setUserDetailsPasswordService(userDetailsPasswordService);
         return new ProviderManager(authenticationProvider);
     }
 
@@ -78,9 +111,13 @@ public class SecurityConfig {
                 .authorizeHttpRequests(authorize -> authorize
                         .requestMatchers("/h2-console/**").permitAll() //allow H2 console for development
                         .requestMatchers("/api/auth/register", "/api/auth/login").permitAll() //allow public registration
-                        .requestMatchers(HttpMethod.GET, "/api/events", "/api/events/{id}").permitAll()
+                        .requestMatchers(HttpMethod.GET, "/api/events", "/api/events/page", "/api/events/search", "/api/events/{id}").permitAll()
+                        .requestMatchers(HttpMethod.GET, "/api/events/{id}/availability/stream", "/api/events/{id}/description.html").permitAll()
+                        .requestMatchers(HttpMethod.GET, "/images/**").permitAll() //event images from the local image store
                         .requestMatchers(HttpMethod.POST, "/api/events").hasRole("ADMIN")
                         .requestMatchers("/api/auth/me").authenticated()
+                        .requestMatchers("/actuator/health").permitAll()
+                        .requestMatchers("/actuator/**").hasRole("ADMIN")
                         .anyRequest().authenticated() //all other API requests require authentication
                 )
                 .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS));
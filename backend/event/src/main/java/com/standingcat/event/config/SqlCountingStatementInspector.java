@@ -0,0 +1,13 @@
+package com.standingcat.event.config;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+//registered through spring.jpa.properties.hibernate.session_factory.statement_inspector.
+//counts every statement Hibernate prepares for the current request, JdbcTemplate calls aren't seen
+public class SqlCountingStatementInspector implements StatementInspector {
+    @Override
+    public String inspect(String sql) {
+        RequestTiming.statementExecuted();
+        return sql;
+    }
+}
@@ -1,5 +1,6 @@
 package com.standingcat.event.config;
 import com.standingcat.event.repository.UserRepository;
+import com.standingcat.event.security.AuthenticatedUser;
 import org.springframework.boot.test.context.TestConfiguration;
 
 import org.springframework.context.annotation.Bean;
@@ -12,12 +13,16 @@ import org.springframework.security.config.annotation.method.configuration.Enabl
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.AuthorityUtils;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 
+import java.util.List;
+
 import static org.springframework.security.config.Customizer.withDefaults;
 
 @TestConfiguration
@@ -37,11 +42,9 @@ public class TestSecurityConfig {
         return username -> {
             com.standingcat.event.model.User user = userRepository.findByUsername(username)
                     .orElseThrow(() -> new UsernameNotFoundException("User not found: " + username));
-            return org.springframework.security.core.userdetails.User.builder()
-                    .username(user.getUsername())
-                    .password(user.getPassword())
-                    .roles(user.getRoles().toArray(new String[0]))
-                    .build(); //roles have to be converted from Set<String> to String[]
+            //stored with the ROLE_ prefix already, so they are the authority names as they are
+            List<GrantedAuthority> authorities = AuthorityUtils.createAuthorityList(user.getRoles());
+            return new AuthenticatedUser(user.getId(), user.getUsername(), user.getPassword(), authorities);
         };
     }
 
@@ -1,10 +1,14 @@
 package com.standingcat.event.controller;
 
+import com.standingcat.event.exception.PasswordHashingBusyException;
 import com.standingcat.event.model.User;
+import com.standingcat.event.security.LoginThrottle;
 import com.standingcat.event.security.jwt.JwtUtil;
 import com.standingcat.event.service.UserService;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseCookie;
 import org.springframework.http.ResponseEntity;
@@ -13,10 +17,11 @@ import org.springframework.security.authentication.UsernamePasswordAuthenticatio
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.Duration;
 import java.util.Map;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/auth")
@@ -26,10 +31,11 @@ public class AuthController {
     @Autowired
     private AuthenticationManager authenticationManager;
 
-    @Autowired
-    private UserDetailsService userDetailsService;
     @Autowired
     private UserService userService;
+    @Autowired
+    private LoginThrottle loginThrottle;
+
     @PostMapping("/register")
     public ResponseEntity<?> registerUser(@RequestBody User user) {
         try {
@@ -37,24 +43,36 @@ public class AuthController {
             registeredUser.setPassword(null);
             //don't want the password in the response
             return  ResponseEntity.status(HttpStatus.CREATED).body(registeredUser);
+        } catch (PasswordHashingBusyException e) {
+            return busy(e);
         } catch (RuntimeException e){
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("error", e.getMessage()));
         }
     }
 
     @PostMapping("/login")
-    public ResponseEntity<?> login(@RequestBody Map<String, String> loginRequest, HttpServletResponse response) {
+    public ResponseEntity<?> login(@RequestBody Map<String, String> loginRequest, HttpServletRequest request,
+                                   HttpServletResponse response) {
         String username = loginRequest.get("username");
         String password = loginRequest.get("password");
 
+        //refused before the password is checked, so guessing costs us no BCrypt
+        Optional<Duration> retryAfter = loginThrottle.tryAcquire(request.getRemoteAddr(), username);
+        if (retryAfter.isPresent()) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, retryAfter.get().toSeconds())))
+                    .body(Map.of("error", "Too many login attempts, try again later."));
+        }
+
         try {
             // authenticate user
-            authenticationManager.authenticate(
+            Authentication authentication = authenticationManager.authenticate(
                     new UsernamePasswordAuthenticationToken(username, password)
             );
+            loginThrottle.succeeded(request.getRemoteAddr(), username);
 
-            // load user details for JWT generation
-            UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+            // the authenticated principal already holds what the JWT needs
+            UserDetails userDetails = (UserDetails) authentication.getPrincipal();
 
             // generate token
             String jwt = jwtUtil.generateToken(userDetails);
@@ -72,11 +90,20 @@ public class AuthController {
             return ResponseEntity.ok(Map.of("message", "successful login"));
 
         } catch (AuthenticationException e) {
+            loginThrottle.failed(request.getRemoteAddr(), username);
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                     .body(Map.of("error", "Invalid username or password"));
+        } catch (PasswordHashingBusyException e) {
+            return busy(e);
         }
     }
 
+    private static ResponseEntity<?> busy(PasswordHashingBusyException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(Map.of("error", e.getMessage()));
+    }
+
     @PostMapping("/logout")
     public ResponseEntity<?> logout(HttpServletResponse response) {
         ResponseCookie cookie = ResponseCookie.from("jwt", "")
@@ -1,45 +1,67 @@
 package com.standingcat.event.controller;
 
+import com.standingcat.event.dto.EnrollmentCreatedResponse;
+import com.standingcat.event.dto.EnrollmentImportResult;
+import com.standingcat.event.dto.EnrollmentPageResponse;
 import com.standingcat.event.dto.EnrollmentResponse;
+import com.standingcat.event.dto.MyEnrollmentPageResponse;
+import com.standingcat.event.dto.WaitlistResponse;
+import com.standingcat.event.exception.EventNotFoundException;
+import com.standingcat.event.exception.InsufficientCapacityException;
 import com.standingcat.event.model.Enrollment;
 import com.standingcat.event.model.Event;
-import com.standingcat.event.model.User;
+import com.standingcat.event.security.CurrentUser;
 import com.standingcat.event.service.EnrollmentService;
-import com.standingcat.event.service.UserService;
+import com.standingcat.event.service.EnrollmentTransferService;
+import com.standingcat.event.service.WaitlistService;
 import org.apache.coyote.Response;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
-import org.springframework.security.core.annotation.AuthenticationPrincipal;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/enrollments")
 public class EnrollmentController {
-    @Autowired
-    UserService userService;
     @Autowired
     EnrollmentService enrollmentService;
+    @Autowired
+    EnrollmentTransferService enrollmentTransferService;
+    @Autowired
+    WaitlistService waitlistService;
     //enroll user
 
     @PostMapping("/{eventId}")
     @PreAuthorize("hasRole('USER')")
-    public ResponseEntity<?> enrollUserToEvent(@PathVariable Long eventId, @AuthenticationPrincipal UserDetails userDetails) {
-        Optional<User> enrollingUser = userService.findByUsername(userDetails.getUsername());
-        if (enrollingUser.isEmpty()) {
+    public ResponseEntity<?> enrollUserToEvent(@PathVariable Long eventId,
+                                               @RequestParam(value = "waitlist", defaultValue = "false") boolean waitlist,
+                                               @CurrentUser Long userId) {
+        if (userId == null) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "Authenticated user not found."));
         }
-        Long userId = enrollingUser.get().getId();
 
         try {
             Enrollment enrollment = enrollmentService.enrollUserToEvent(userId, eventId);
-            return ResponseEntity.status(HttpStatus.CREATED).body(enrollment);
+            return ResponseEntity.status(HttpStatus.CREATED).body(new EnrollmentCreatedResponse(enrollment));
+        } catch (InsufficientCapacityException e) {
+            if (!waitlist) {
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("error", e.getMessage()));
+            }
+            //full, so queue up once instead of retrying. 202 while waiting, 201 if a seat turned up meanwhile
+            WaitlistResponse response = waitlistService.join(userId, eventId);
+            return ResponseEntity.status(response.isEnrolled() ? HttpStatus.CREATED : HttpStatus.ACCEPTED).body(response);
         } catch (RuntimeException e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("error", e.getMessage()));
         }
@@ -49,14 +71,78 @@ public class EnrollmentController {
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<?> getEnrollmentsForEvent(@PathVariable Long eventId) {
         try {
-            List<Enrollment> enrollmentList = enrollmentService.getEnrollmentsForEvent(eventId);
-            List<EnrollmentResponse> enrollmentResponse = enrollmentList.stream().map(EnrollmentResponse::new).toList();
+            List<EnrollmentResponse> enrollmentResponse = enrollmentService.getEnrollmentsForEvent(eventId);
             return ResponseEntity.ok(enrollmentResponse);
         } catch (RuntimeException e) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", e.getMessage()));
         }
     }
 
+    //the same roster keyset paged, sort=time (enrollment order) or sort=username. pass nextCursor back for the next page
+    @GetMapping("/event/{eventId}/roster")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> getRosterPage(@PathVariable Long eventId,
+                                           @RequestParam(value = "cursor", required = false) String cursor,
+                                           @RequestParam(value = "limit", defaultValue = "100") int limit,
+                                           @RequestParam(value = "sort", defaultValue = "time") String sort) {
+        EnrollmentService.RosterOrder order;
+        try {
+            order = EnrollmentService.RosterOrder.valueOf(sort.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Sort must be time or username."));
+        }
+        try {
+            EnrollmentPageResponse page = enrollmentService.getRosterPage(eventId, cursor, limit, order);
+            return ResponseEntity.ok(page);
+        } catch (EventNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    //admins download the attendee list of an event, written row by row as it is read
+    @GetMapping("/event/{eventId}/export")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> exportEnrollmentsForEvent(@PathVariable Long eventId,
+                                                       @RequestParam(value = "format", defaultValue = "csv") String format) {
+        EnrollmentTransferService.Format exportFormat;
+        try {
+            exportFormat = EnrollmentTransferService.Format.valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Format must be csv or ndjson."));
+        }
+        if (!enrollmentTransferService.eventExists(eventId)) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "Event not found."));
+        }
+        StreamingResponseBody body = out -> enrollmentTransferService.exportEnrollments(eventId, exportFormat, out);
+        boolean csv = exportFormat == EnrollmentTransferService.Format.CSV;
+        return ResponseEntity.ok()
+                .contentType(csv ? new MediaType("text", "csv", StandardCharsets.UTF_8) : MediaType.APPLICATION_NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename("event-" + eventId + "-enrollments." + (csv ? "csv" : "ndjson"))
+                        .build()
+                        .toString())
+                .body(body);
+    }
+
+    //admins enroll users in bulk, body is one username per line
+    @PostMapping(value = "/event/{eventId}/import", consumes = {"text/csv", MediaType.TEXT_PLAIN_VALUE})
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> importEnrollmentsForEvent(@PathVariable Long eventId, InputStream body) {
+        try {
+            EnrollmentImportResult result = enrollmentTransferService.importEnrollments(eventId, body);
+            return ResponseEntity.ok(result);
+        } catch (EventNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("error", e.getMessage()));
+        } catch (IOException e) {
+            //the body broke off, whatever was read is rolled back
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("error", "Could not read the request body."));
+        }
+    }
+
 //    @GetMapping("/event/{eventId}")
 //    @PreAuthorize("hasRole('ADMIN')")
 //    public ResponseEntity<?> getEnrollmentsForEvent(@PathVariable Long eventId) {
@@ -72,40 +158,68 @@ public class EnrollmentController {
 
     @GetMapping("/my-enrollments")
     @PreAuthorize("hasRole('USER')")
-    public ResponseEntity<?> getMyEnrollments(@AuthenticationPrincipal UserDetails userDetails) {
-        Optional<User> currentUser = userService.findByUsername(userDetails.getUsername());
-        if (currentUser.isEmpty()) {
+    public ResponseEntity<?> getMyEnrollments(@CurrentUser Long userId) {
+        if (userId == null) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "Authenticated user not found."));
         }
-        Long userId = currentUser.get().getId();
-
         List<Enrollment> enrollments = enrollmentService.getEnrollmentsForUser(userId);
         return ResponseEntity.ok(enrollments);
     }
 
+    //keyset paged, DTO version of my-enrollments ordered by event time, pass nextCursor back for the next page.
+    //upcoming=true leaves out events that already started
+    @GetMapping("/my-enrollments/page")
+    @PreAuthorize("hasRole('USER')")
+    public ResponseEntity<?> getMyEnrollmentsPage(@RequestParam(value = "cursor", required = false) String cursor,
+                                                  @RequestParam(value = "limit", defaultValue = "20") int limit,
+                                                  @RequestParam(value = "upcoming", defaultValue = "false") boolean upcoming,
+                                                  @CurrentUser Long userId) {
+        if (userId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "Authenticated user not found."));
+        }
+        try {
+            MyEnrollmentPageResponse page = enrollmentService.getEnrollmentsPageForUser(userId, cursor, limit, upcoming);
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("error", e.getMessage()));
+        }
+    }
+
     @GetMapping("/check/{eventId}")
     @PreAuthorize("hasRole('USER')")
-    public ResponseEntity<Map<String, Boolean>> checkUserEnrolledToEvent(@PathVariable Long eventId, @AuthenticationPrincipal UserDetails userDetails) {
-        Optional<User> currentUser = userService.findByUsername(userDetails.getUsername());
-        if (currentUser.isEmpty()) {
+    public ResponseEntity<Map<String, Boolean>> checkUserEnrolledToEvent(@PathVariable Long eventId, @CurrentUser Long userId) {
+        if (userId == null) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("enrolled", false));
         }
-        Long userId = currentUser.get().getId();
         Boolean response = enrollmentService.checkUserEnrolled(userId, eventId);
         return ResponseEntity.ok(Map.of("enrolled", response));
 
     }
 
+    //which of the given events the user is enrolled in, one call for a whole page of event cards.
+    //body is a JSON array of event ids, the answer is {"enrolled": [ids]}
+    @PostMapping("/check")
+    @PreAuthorize("hasRole('USER')")
+    public ResponseEntity<?> checkUserEnrolledToEvents(@RequestBody List<Long> eventIds, @CurrentUser Long userId) {
+        if (userId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "Authenticated user not found."));
+        }
+        try {
+            List<Long> enrolled = enrollmentService.getEnrolledAmong(userId, eventIds);
+            return ResponseEntity.ok(Map.of("enrolled", enrolled));
+        } catch (IllegalArgumentException e) {
+            //more ids than MAX_CHECK_IDS
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("error", e.getMessage()));
+        }
+    }
+
     //users can un-enroll themselves
     @DeleteMapping("/{eventId}")
     @PreAuthorize("hasRole('USER')")
-    public ResponseEntity<?> unEnrollUserFromEvent(@PathVariable Long eventId, @AuthenticationPrincipal UserDetails userDetails) {
-        Optional<User> currentUser = userService.findByUsername(userDetails.getUsername());
-        if (currentUser.isEmpty()) {
+    public ResponseEntity<?> unEnrollUserFromEvent(@PathVariable Long eventId, @CurrentUser Long userId) {
+        if (userId == null) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "Authenticated user not found."));
         }
-        Long userId = currentUser.get().getId();
-
         try {
             enrollmentService.unEnrollUserFromEvent(userId, eventId);
             return ResponseEntity.noContent().build();
@@ -113,6 +227,21 @@ public class EnrollmentController {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("error", e.getMessage()));
         }
     }
+    //users can leave the waitlist of an event
+    @DeleteMapping("/{eventId}/waitlist")
+    @PreAuthorize("hasRole('USER')")
+    public ResponseEntity<?> leaveWaitlist(@PathVariable Long eventId, @CurrentUser Long userId) {
+        if (userId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "Authenticated user not found."));
+        }
+        try {
+            waitlistService.leave(userId, eventId);
+            return ResponseEntity.noContent().build();
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("error", e.getMessage()));
+        }
+    }
+
     //admins can remove user enrollments
     @DeleteMapping("/admin/{eventId}/{userId}")
     @PreAuthorize("hasRole('ADMIN')")
@@ -1,12 +1,19 @@
 package com.standingcat.event.controller;
 
+import com.standingcat.event.dto.EventPageResponse;
 import com.standingcat.event.dto.EventResponse;
+import com.standingcat.event.dto.RenderedDescription;
+import com.standingcat.event.dto.SeatAvailability;
 import com.standingcat.event.model.Event;
 import com.standingcat.event.model.User;
 import com.standingcat.event.service.EventService;
+import com.standingcat.event.service.SeatAvailabilityBroadcaster;
 import com.standingcat.event.service.UserService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -14,9 +21,14 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDateTime;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -24,47 +36,120 @@ import java.util.Optional;
 @RestController
 @RequestMapping("/api/events")
 public class EventController {
+    private static final Logger log = LoggerFactory.getLogger(EventController.class);
+
     @Autowired
     EventService eventService;
     @Autowired
     private UserService userService;
+    @Autowired
+    private SeatAvailabilityBroadcaster seatAvailability;
 //    @GetMapping
 //    public ResponseEntity<List<Event>> getAllEvents() {
 //        List<Event> events = eventService.getAllEvents();
 //        return ResponseEntity.ok(events);
 //    }
 
+    //Polling clients send back the ETag as If-None-Match. Both endpoints answer from the catalogue cache, so an
+    //unchanged listing or event gets a 304 without a query or serializing the body.
     @GetMapping
-    public ResponseEntity<?> getAllEvents() {
-        List<Event> events = eventService.getAllEvents();
-        List<EventResponse> response = events.stream()
-                .map(EventResponse::new)
-                .toList();
-        return ResponseEntity.ok(response);
+    public ResponseEntity<?> getAllEvents(WebRequest request) {
+        List<EventResponse> response = eventService.getAllEvents();
+        String etag = listingETag(response);
+        if (request.checkNotModified(etag)) {
+            return null; //304 and the ETag header are already set
+        }
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache())
+                .eTag(etag)
+                .body(response);
+    }
+
+    //keyset paged listing for clients that don't want the whole catalogue, pass nextCursor back to get the next page
+    @GetMapping("/page")
+    public ResponseEntity<?> getEventsPage(@RequestParam(value = "cursor", required = false) String cursor,
+                                           @RequestParam(value = "limit", defaultValue = "20") int limit,
+                                           @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                                           @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+                                           @RequestParam(value = "ownerId", required = false) Long ownerId,
+                                           @RequestParam(value = "hasFreeSeats", defaultValue = "false") boolean hasFreeSeats) {
+        try {
+            EventPageResponse page = eventService.getVisibleEventsPage(cursor, limit, from, to, ownerId, hasFreeSeats);
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    //search-as-you-type over title and description, words may be typed only partly
+    @GetMapping("/search")
+    public ResponseEntity<?> searchEvents(@RequestParam("q") String query,
+                                          @RequestParam(value = "limit", defaultValue = "20") int limit) {
+        return ResponseEntity.ok(eventService.searchEvents(query, limit));
     }
 
     @GetMapping("/{id}") //Anyone can view a single event
-    public ResponseEntity<?> getEventById(@PathVariable Long id) {
-        return eventService.getEventById(id)
-                .map(event -> {
-                    int currentEnrollments = event.getEnrollments() != null
-                            ? event.getEnrollments().size()
-                            : 0;
-
-                    EventResponse response = new EventResponse(
-                            event.getId(),
-                            event.getTitle(),
-                            event.getDescription(),
-                            event.getImageUrl(),
-                            event.getEventTime(),
-                            event.getCapacity(),
-                            currentEnrollments,
-                            event.getDescriptionMarkdown()
-                    );
-
-                    return ResponseEntity.ok(response);
-                })
-                .orElse(ResponseEntity.notFound().build());
+    public ResponseEntity<?> getEventById(@PathVariable Long id, WebRequest request) {
+        Optional<EventResponse> event = eventService.getEventResponseById(id);
+        if (event.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        String etag = event.get().etag();
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache())
+                .eTag(etag)
+                .body(event.get());
+    }
+
+    //the markdown description rendered to sanitized HTML on the server, for clients that would rather not render it.
+    //the ETag is the hash of the markdown, so it only changes when the description does. 204 without a description
+    @GetMapping(value = "/{id}/description.html", produces = MediaType.TEXT_HTML_VALUE)
+    public ResponseEntity<?> getDescriptionHtml(@PathVariable Long id, WebRequest request) {
+        Optional<RenderedDescription> description = eventService.getDescriptionHtml(id);
+        if (description.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        if (description.get().getHtml() == null) {
+            return ResponseEntity.noContent().build();
+        }
+        String etag = "\"" + description.get().getHash() + "\"";
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache())
+                .eTag(etag)
+                .contentType(new MediaType(MediaType.TEXT_HTML, StandardCharsets.UTF_8))
+                .body(description.get().getHtml());
+    }
+
+    //live seat counts as server-sent events ("availability"), instead of polling the event. starts with the current count
+    @GetMapping(value = "/{id}/availability/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<?> streamAvailability(@PathVariable Long id) {
+        Optional<EventResponse> event = eventService.getEventResponseById(id);
+        if (event.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        EventResponse current = event.get();
+        SeatAvailability availability = new SeatAvailability(current.getId(), current.getCapacity(), current.getCurrentEnrollments());
+        return ResponseEntity.ok(seatAvailability.subscribe(availability));
+    }
+
+    //changes when an event is added, removed or reordered, or any event's own ETag changes
+    private static String listingETag(List<EventResponse> events) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+        for (EventResponse event : events) {
+            digest.update(event.etag().getBytes(StandardCharsets.US_ASCII));
+        }
+        return "\"" + HexFormat.of().formatHex(digest.digest(), 0, 16) + "\"";
     }
 
 
@@ -106,8 +191,6 @@ public class EventController {
                                          @RequestParam(value = "image", required = false) MultipartFile image,
                                          @AuthenticationPrincipal UserDetails userDetails) {
         try {
-            System.out.println("Trying to update event " + id);
-            System.out.println("Title of this event is " + title);
             Optional<User> adminUser = userService.findByUsername(userDetails.getUsername());
             Event updatedEvent = eventService.updateEvent(  id,
                                                             title,
@@ -120,7 +203,7 @@ public class EventController {
             EventResponse response = new EventResponse(updatedEvent);
             return ResponseEntity.ok(response);
         } catch(RuntimeException e) {
-            System.out.println("There was an error in the put " + e.getMessage());
+            log.debug("Update of event {} failed: {}", id, e.getMessage());
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", e.getMessage()));
         }
     }
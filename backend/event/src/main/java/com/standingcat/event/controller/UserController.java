@@ -0,0 +1,36 @@
+package com.standingcat.event.controller;
+
+import com.standingcat.event.exception.UserNotFoundException;
+import com.standingcat.event.model.User;
+import com.standingcat.event.service.UserService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+import java.util.Set;
+
+@RestController
+@RequestMapping("/api/users")
+public class UserController {
+    @Autowired
+    private UserService userService;
+
+    //takes effect on the user's next request, their token doesn't have to expire first
+    @PutMapping("/{id}/roles")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> updateRoles(@PathVariable Long id, @RequestBody Set<String> roles) {
+        try {
+            User user = userService.updateRoles(id, roles);
+            return ResponseEntity.ok(Map.of("id", user.getId(),
+                                            "username", user.getUsername(),
+                                            "roles", user.getRoles()));
+        } catch (UserNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("error", e.getMessage()));
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.standingcat.event.dto;
+
+import com.standingcat.event.model.Enrollment;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+//what a new enrollment answers with. only ids, so serializing it doesn't load the user or the event behind the references
+@Data
+@AllArgsConstructor
+public class EnrollmentCreatedResponse {
+    private Long id;
+    private LocalDateTime enrollmentTime;
+    private Long userId;
+    private Long eventId;
+
+    public EnrollmentCreatedResponse(Enrollment enrollment) {
+        this(enrollment.getId(), enrollment.getEnrollmentTime(),
+                enrollment.getUser().getId(), enrollment.getEvent().getId());
+    }
+}
@@ -0,0 +1,14 @@
+package com.standingcat.event.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class EnrollmentImportResult {
+    private int imported;
+    //unknown usernames and users who were already enrolled
+    private int skipped;
+    //rows left over once the event was full
+    private int overCapacity;
+}
@@ -1,24 +1,26 @@
 package com.standingcat.event.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.standingcat.event.model.Event;
 import lombok.AllArgsConstructor;
-import lombok.Data;
-import lombok.NoArgsConstructor;
+import lombok.Value;
 
 import java.time.LocalDateTime;
 
-@Data
-@NoArgsConstructor
+//immutable so the same instance can be shared out of the catalogue cache
+@Value
 @AllArgsConstructor
 public class EventResponse {
-    private Long id;
-    private String title;
-    private String description;
-    private String imageUrl;
-    private LocalDateTime eventTime;
-    private Integer capacity;
-    private int currentEnrollments;
-    private String descriptionMarkdown;
+    Long id;
+    String title;
+    String description;
+    String imageUrl;
+    LocalDateTime eventTime;
+    Integer capacity;
+    int currentEnrollments;
+    String descriptionMarkdown;
+    @JsonIgnore
+    long revision;
 
     public EventResponse(Event event) {
         this.id = event.getId();
@@ -27,7 +29,13 @@ public class EventResponse {
         this.imageUrl = event.getImageUrl();
         this.eventTime = event.getEventTime();
         this.capacity = event.getCapacity();
-        this.currentEnrollments = event.getEnrollments().size();
+        this.currentEnrollments = event.getEnrolledCount(); //maintained column, no need to load the enrollments
         this.descriptionMarkdown = event.getDescriptionMarkdown();
+        this.revision = event.getRevision();
+    }
+
+    //strong validator of this snapshot, changes when the event is edited or a seat is taken or freed
+    public String etag() {
+        return "\"" + id + "-" + revision + "-" + currentEnrollments + "\"";
     }
 }
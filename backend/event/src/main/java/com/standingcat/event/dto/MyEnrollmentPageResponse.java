@@ -0,0 +1,15 @@
+package com.standingcat.event.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MyEnrollmentPageResponse {
+    private List<MyEnrollmentResponse> enrollments;
+    private String nextCursor; //null on the last page
+}
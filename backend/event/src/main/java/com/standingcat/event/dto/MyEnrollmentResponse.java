@@ -0,0 +1,22 @@
+package com.standingcat.event.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+//one of the current user's enrollments with what the list shows of its event, read in one query (no entities)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MyEnrollmentResponse {
+    private Long id;
+    private LocalDateTime enrollmentTime;
+    private Long eventId;
+    private String title;
+    private String imageUrl;
+    private LocalDateTime eventTime;
+    private Integer capacity;
+    private int currentEnrollments;
+}
@@ -0,0 +1,10 @@
+package com.standingcat.event.dto;
+
+import lombok.Value;
+
+//an event's description as HTML, hash is the SHA-256 of the markdown and doubles as its ETag. both null without one
+@Value
+public class RenderedDescription {
+    String hash;
+    String html;
+}
@@ -0,0 +1,31 @@
+package com.standingcat.event.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+//position in an event's roster: the sort value of the last row (enrollment time or username) and its enrollment id,
+//handed to clients as an opaque string
+@Data
+@AllArgsConstructor
+public class RosterCursor {
+    private String key;
+    private Long id;
+
+    public String encode() {
+        String raw = key + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static RosterCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf('|'); //usernames may contain the separator, ids don't
+            return new RosterCursor(raw.substring(0, separator), Long.parseLong(raw.substring(separator + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Invalid cursor.");
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.standingcat.event.dto;
+
+import lombok.Value;
+
+//what the availability stream pushes, null capacity and seatsLeft mean unlimited
+@Value
+public class SeatAvailability {
+    Long eventId;
+    Integer capacity;
+    int enrolled;
+    Integer seatsLeft;
+
+    public SeatAvailability(Long eventId, Integer capacity, int enrolled) {
+        this.eventId = eventId;
+        this.capacity = capacity;
+        this.enrolled = enrolled;
+        this.seatsLeft = capacity == null ? null : Math.max(0, capacity - enrolled);
+    }
+}
@@ -0,0 +1,14 @@
+package com.standingcat.event.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class WaitlistResponse {
+    private Long eventId;
+    //true when a seat was free after all and the user went straight in
+    private boolean enrolled;
+    //1-based place in line, null once enrolled
+    private Integer position;
+}
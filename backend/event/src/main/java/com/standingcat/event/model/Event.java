@@ -35,6 +35,10 @@ public class Event
 
     private String imagePublicId;
 
+    //set while a new image is being uploaded in the background, see EventImageService
+    @JsonIgnore
+    private String pendingImageId;
+
     @Column(nullable = false)
     private LocalDateTime eventTime;
 
@@ -48,6 +52,17 @@ public class Event
 
     private Integer capacity;
 
+    //seats taken, only changed through the conditional updates in EventRepository.
+    //updatable = false so a normal entity flush can never overwrite a concurrent seat claim
+    @Column(nullable = false, updatable = false)
+    private int enrolledCount = 0;
+
+    //bumped whenever the row itself is updated, together with enrolledCount it versions what clients see (the ETag).
+    //bulk updates that change visible fields bump it themselves, see EventRepository.completeImageUpload
+    @JsonIgnore
+    @Column(nullable = false)
+    private long revision = 0;
+
     @JsonIgnore
     @OneToMany(mappedBy = "event", orphanRemoval = true)
     @ToString.Exclude
@@ -57,4 +72,19 @@ public class Event
     @Column(columnDefinition = "TEXT")
     private String descriptionMarkdown;
 
+    //descriptionMarkdown rendered to sanitized HTML when it is saved, with the SHA-256 of the markdown it came from.
+    //both null for rows saved before rendering moved to the server, those are rendered on read
+    @JsonIgnore
+    @Column(columnDefinition = "TEXT")
+    private String descriptionHtml;
+
+    @JsonIgnore
+    @Column(length = 64)
+    private String descriptionHash;
+
+    @PreUpdate
+    void bumpRevision() {
+        revision++;
+    }
+
 }
@@ -0,0 +1,49 @@
+package com.standingcat.event.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+//an email waiting in the outbox. written in the same transaction as the change it reports, sent later by EmailDispatcher
+@Entity
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "email_outbox")
+public class OutboundEmail {
+    public enum Status { PENDING, SENT, FAILED }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String recipient;
+
+    @Column(nullable = false)
+    private String subject;
+
+    @Column(nullable = false, length = 4000)
+    private String body;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Status status = Status.PENDING;
+
+    @Column(nullable = false)
+    private int attempts = 0;
+
+    @Column(nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    private LocalDateTime sentAt;
+
+    @Column(length = 1000)
+    private String lastError;
+}
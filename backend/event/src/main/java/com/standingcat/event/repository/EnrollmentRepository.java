@@ -1,19 +1,90 @@
 package com.standingcat.event.repository;
 
+import com.standingcat.event.dto.EnrollmentResponse;
+import com.standingcat.event.dto.MyEnrollmentResponse;
 import com.standingcat.event.model.Enrollment;
 import com.standingcat.event.model.Event;
 import com.standingcat.event.model.User;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface EnrollmentRepository extends JpaRepository<Enrollment, Long> {
+    @EntityGraph(attributePaths = {"user", "event", "event.owner"}) //serialized with all three, fetched in the same query
     List<Enrollment> findByUser(User user); //user sees all his enrollments
     List<Enrollment> findByEvent(Event event); //admin can see all users enrolled to event
     Optional<Enrollment> findByUserAndEvent(User user, Event event); //check if already enrolled
 
     boolean existsByUserAndEvent(User user, Event event);
+
+    boolean existsByUserIdAndEventId(Long userId, Long eventId);
+
+    Optional<Enrollment> findByUserIdAndEventId(Long userId, Long eventId);
+
+    @EntityGraph(attributePaths = {"user", "event", "event.owner"})
+    List<Enrollment> findByUserId(Long userId);
+
+    //keyset page of a user's enrollments ordered by (event time, enrollment id), starting strictly after
+    //(afterTime, afterId), or at the start when afterTime is null. one query with the event joined in, the (user_id, event_id) unique index finds the rows
+    @Query("""
+            SELECT new com.standingcat.event.dto.MyEnrollmentResponse(
+                en.id, en.enrollmentTime, ev.id, ev.title, ev.imageUrl, ev.eventTime, ev.capacity, ev.enrolledCount)
+            FROM Enrollment en JOIN en.event ev
+            WHERE en.user.id = :userId
+              AND (:afterTime IS NULL OR ev.eventTime > :afterTime OR (ev.eventTime = :afterTime AND en.id > :afterId))
+            ORDER BY ev.eventTime ASC, en.id ASC
+            """)
+    List<MyEnrollmentResponse> findPageForUser(@Param("userId") Long userId,
+                                               @Param("afterTime") LocalDateTime afterTime,
+                                               @Param("afterId") Long afterId,
+                                               Limit limit);
+
+    //the roster of an event in one query, the user columns come from the join instead of a lazy load per row
+    @Query("""
+            SELECT new com.standingcat.event.dto.EnrollmentResponse(
+                en.id, en.enrollmentTime, u.id, u.email, u.username, en.event.id)
+            FROM Enrollment en JOIN en.user u
+            WHERE en.event.id = :eventId
+            ORDER BY en.id ASC
+            """)
+    List<EnrollmentResponse> findRoster(@Param("eventId") Long eventId);
+
+    //keyset page of the roster by (enrollmentTime, id), read in order from the (event_id, enrollment_time, id) index
+    @Query("""
+            SELECT new com.standingcat.event.dto.EnrollmentResponse(
+                en.id, en.enrollmentTime, u.id, u.email, u.username, en.event.id)
+            FROM Enrollment en JOIN en.user u
+            WHERE en.event.id = :eventId
+              AND (:afterTime IS NULL OR en.enrollmentTime > :afterTime OR (en.enrollmentTime = :afterTime AND en.id > :afterId))
+            ORDER BY en.enrollmentTime ASC, en.id ASC
+            """)
+    List<EnrollmentResponse> findRosterPageByTime(@Param("eventId") Long eventId,
+                                                  @Param("afterTime") LocalDateTime afterTime,
+                                                  @Param("afterId") Long afterId,
+                                                  Limit limit);
+
+    //keyset page of the roster by (username, id)
+    @Query("""
+            SELECT new com.standingcat.event.dto.EnrollmentResponse(
+                en.id, en.enrollmentTime, u.id, u.email, u.username, en.event.id)
+            FROM Enrollment en JOIN en.user u
+            WHERE en.event.id = :eventId
+              AND (u.username > :afterUsername OR (u.username = :afterUsername AND en.id > :afterId))
+            ORDER BY u.username ASC, en.id ASC
+            """)
+    List<EnrollmentResponse> findRosterPageByUsername(@Param("eventId") Long eventId,
+                                                      @Param("afterUsername") String afterUsername,
+                                                      @Param("afterId") Long afterId,
+                                                      Limit limit);
+
+    @Query("SELECT en.event.id FROM Enrollment en WHERE en.user.id = :userId")
+    List<Long> findEventIdsByUserId(@Param("userId") Long userId);
 }
@@ -1,15 +1,84 @@
 package com.standingcat.event.repository;
 
 import com.standingcat.event.model.Event;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface EventRepository extends JpaRepository<Event, Long> {
     List<Event> findByIsHiddenFalse(); //return all events where is hidden is false
+
+    @Query("SELECT e.id FROM Event e WHERE e.isHidden = false ORDER BY e.id")
+    List<Long> findVisibleIds(); //just the ids, the catalogue cache fills in the rest
     List<Event> findByOwnerId(Long ownerId); //find all events owned by a user
 
     boolean existsByTitle(String title);
+
+    //keyset page of visible events ordered by (eventTime, id), starting strictly after (afterTime, afterId),
+    //or at the earliest event when afterTime is null.
+    //backed by the (is_hidden, event_time, id) and (owner_id, event_time, id) indexes so a page costs the same however deep it is
+    @Query("""
+            SELECT e FROM Event e
+            WHERE e.isHidden = false
+              AND (:afterTime IS NULL OR e.eventTime > :afterTime OR (e.eventTime = :afterTime AND e.id > :afterId))
+              AND e.eventTime < :before
+              AND (:ownerId IS NULL OR e.owner.id = :ownerId)
+              AND (:onlyWithFreeSeats = false OR e.capacity IS NULL OR e.enrolledCount < e.capacity)
+            ORDER BY e.eventTime ASC, e.id ASC
+            """)
+    List<Event> findVisiblePage(@Param("afterTime") LocalDateTime afterTime,
+                                @Param("afterId") Long afterId,
+                                @Param("before") LocalDateTime before,
+                                @Param("ownerId") Long ownerId,
+                                @Param("onlyWithFreeSeats") boolean onlyWithFreeSeats,
+                                Limit limit);
+
+    //takes one seat only if there is still room, returns 1 if the seat was claimed and 0 if the event is full (or missing)
+    //the row lock taken by the update is what stops two concurrent enrollments from both getting the last seat
+    @Modifying
+    @Query("UPDATE Event e SET e.enrolledCount = e.enrolledCount + 1 " +
+            "WHERE e.id = :eventId AND (e.capacity IS NULL OR e.enrolledCount < e.capacity)")
+    int claimSeat(@Param("eventId") Long eventId);
+
+    @Modifying
+    @Query("UPDATE Event e SET e.enrolledCount = e.enrolledCount - 1 " +
+            "WHERE e.id = :eventId AND e.enrolledCount > 0")
+    int releaseSeat(@Param("eventId") Long eventId);
+
+    //{id, enrolled count, capacity} of each event still there
+    @Query("SELECT e.id, e.enrolledCount, e.capacity FROM Event e WHERE e.id IN :ids")
+    List<Object[]> findSeatCounts(@Param("ids") Collection<Long> ids);
+
+    //{hash, html, markdown} of the description, markdown only for rows saved before the HTML was stored.
+    //at most one row, the large columns of the event aren't read for a description request
+    @Query("SELECT e.descriptionHash, e.descriptionHtml, " +
+            "CASE WHEN e.descriptionHtml IS NULL THEN e.descriptionMarkdown END " +
+            "FROM Event e WHERE e.id = :eventId")
+    List<Object[]> findDescription(@Param("eventId") Long eventId);
+
+    @Query("SELECT e.imagePublicId FROM Event e WHERE e.id = :eventId")
+    Optional<String> findImagePublicId(@Param("eventId") Long eventId);
+
+    //applies a finished upload, only if the event still waits for that upload (not deleted or superseded)
+    @Modifying
+    @Query("UPDATE Event e SET e.imageUrl = :imageUrl, e.imagePublicId = :imagePublicId, e.pendingImageId = null, " +
+            "e.revision = e.revision + 1 " +
+            "WHERE e.id = :eventId AND e.pendingImageId = :uploadId")
+    int completeImageUpload(@Param("eventId") Long eventId,
+                            @Param("uploadId") String uploadId,
+                            @Param("imageUrl") String imageUrl,
+                            @Param("imagePublicId") String imagePublicId);
+
+    @Modifying
+    @Query("UPDATE Event e SET e.pendingImageId = null WHERE e.id = :eventId AND e.pendingImageId = :uploadId")
+    int abandonImageUpload(@Param("eventId") Long eventId, @Param("uploadId") String uploadId);
 }
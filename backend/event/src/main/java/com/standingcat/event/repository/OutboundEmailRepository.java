@@ -0,0 +1,36 @@
+package com.standingcat.event.repository;
+
+import com.standingcat.event.model.OutboundEmail;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface OutboundEmailRepository extends JpaRepository<OutboundEmail, Long> {
+    //oldest pending emails whose backoff has run out, locked. rows another transaction holds are skipped, not waited for
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("SELECT m FROM OutboundEmail m WHERE m.status = com.standingcat.event.model.OutboundEmail.Status.PENDING " +
+            "AND m.nextAttemptAt <= :now ORDER BY m.id")
+    List<OutboundEmail> findDue(@Param("now") LocalDateTime now, Limit limit);
+
+    long countByStatus(OutboundEmail.Status status);
+
+    //one INSERT ... SELECT, recipient and body come from the user and event rows
+    @Modifying
+    @Query(value = "INSERT INTO email_outbox (recipient, subject, body, status, attempts, next_attempt_at, created_at) " +
+            "SELECT u.email, :subject, CONCAT('Your registration to ', e.title, ' has been confirmed.'), 'PENDING', 0, :now, :now " +
+            "FROM app_user u, app_event e WHERE u.id = :userId AND e.id = :eventId", nativeQuery = true)
+    int enqueueEnrollmentConfirmation(@Param("userId") Long userId, @Param("eventId") Long eventId,
+                                      @Param("subject") String subject, @Param("now") LocalDateTime now);
+}
@@ -2,6 +2,9 @@ package com.standingcat.event.repository;
 
 import com.standingcat.event.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
@@ -10,4 +13,9 @@ import java.util.Optional;
 public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByUsername(String username); //optional for 0 or 1
     Optional<User> findByEmail(String email);
+
+    //re-hash on login, leaves the rest of the row alone
+    @Modifying
+    @Query("UPDATE User u SET u.password = :password WHERE u.username = :username")
+    int updatePassword(@Param("username") String username, @Param("password") String password);
 }
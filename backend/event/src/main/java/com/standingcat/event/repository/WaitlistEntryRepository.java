@@ -0,0 +1,29 @@
+package com.standingcat.event.repository;
+
+import com.standingcat.event.model.WaitlistEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface WaitlistEntryRepository extends JpaRepository<WaitlistEntry, Long> {
+    Optional<WaitlistEntry> findByUserIdAndEventId(Long userId, Long eventId);
+
+    //place in line, 1 for the next person to get a seat
+    @Query("SELECT COUNT(w) FROM WaitlistEntry w WHERE w.event.id = :eventId AND w.id <= :entryId")
+    long countAhead(@Param("eventId") Long eventId, @Param("entryId") Long entryId);
+
+    //{entry id, user id} for the whole line of an event, in queue order
+    @Query("SELECT w.id, w.user.id FROM WaitlistEntry w WHERE w.event.id = :eventId ORDER BY w.id")
+    List<Object[]> findQueue(@Param("eventId") Long eventId);
+
+    //1 if this call took the entry off the list, 0 if it was already gone
+    @Modifying
+    @Query("DELETE FROM WaitlistEntry w WHERE w.id = :id")
+    int deleteEntry(@Param("id") Long id);
+}
@@ -0,0 +1,21 @@
+package com.standingcat.event.security;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+
+import java.util.Collection;
+
+//the principal of a request, a Spring Security User that also knows the app_user id so handlers don't look it up.
+//id is null for tokens issued before the id was put into them
+public class AuthenticatedUser extends User {
+    private final Long id;
+
+    public AuthenticatedUser(Long id, String username, String password, Collection<? extends GrantedAuthority> authorities) {
+        super(username, password, authorities);
+        this.id = id;
+    }
+
+    public Long getId() {
+        return id;
+    }
+}
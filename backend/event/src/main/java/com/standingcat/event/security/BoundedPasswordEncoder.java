@@ -0,0 +1,92 @@
+package com.standingcat.event.security;
+
+import com.standingcat.event.exception.PasswordHashingBusyException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//Runs the wrapped encoder on a small fixed pool instead of the request thread. However many logins arrive at once,
+//at most `threads` CPUs hash passwords and the rest of the app keeps running. Callers wait in a bounded queue;
+//when it is full, or the wait goes past maxWait, they get a PasswordHashingBusyException (503) straight away.
+public class BoundedPasswordEncoder implements PasswordEncoder, AutoCloseable {
+    private final PasswordEncoder delegate;
+    private final ThreadPoolExecutor executor;
+    private final Duration maxWait;
+
+    public BoundedPasswordEncoder(PasswordEncoder delegate, int threads, int queueCapacity, Duration maxWait,
+                                  MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.maxWait = maxWait;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hashing-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        //executor.queued / executor.active / executor.completed tagged name=password.hashing
+        new ExecutorServiceMetrics(executor, "password.hashing", Tags.empty()).bindTo(meterRegistry);
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return run(() -> delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return run(() -> delegate.matches(rawPassword, encodedPassword));
+    }
+
+    //only looks at the hash prefix, cheap enough for the calling thread
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    private <T> T run(Callable<T> hashing) {
+        Future<T> result;
+        try {
+            result = executor.submit(hashing);
+        } catch (RejectedExecutionException e) {
+            throw new PasswordHashingBusyException("Too many sign-ins at the moment, try again shortly.");
+        }
+        try {
+            return result.get(maxWait.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            //only takes it off the queue if it hasn't started, BCrypt never checks the interrupt so a running
+            //hash finishes anyway. The pool size is what actually bounds the CPU spent on hashing.
+            result.cancel(true);
+            throw new PasswordHashingBusyException("Too many sign-ins at the moment, try again shortly.");
+        } catch (InterruptedException e) {
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new PasswordHashingBusyException("Interrupted while waiting to check the password.");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    //picked up as the destroy method of the bean
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,15 @@
+package com.standingcat.event.security;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+//put on a Long handler parameter to get the id of the authenticated user, null if there is no such user.
+//resolved by CurrentUserArgumentResolver
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface CurrentUser {
+}
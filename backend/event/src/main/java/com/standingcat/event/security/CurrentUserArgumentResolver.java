@@ -0,0 +1,43 @@
+package com.standingcat.event.security;
+
+import com.standingcat.event.model.User;
+import com.standingcat.event.service.UserService;
+import org.springframework.core.MethodParameter;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+
+//Resolves @CurrentUser Long parameters. The id normally comes with the principal the JWT filter built from the
+//token, so it costs nothing. Principals without one (tokens from before the uid claim, @WithMockUser in tests)
+//fall back to a lookup by username.
+@Component
+public class CurrentUserArgumentResolver implements HandlerMethodArgumentResolver {
+    private final UserService userService;
+
+    public CurrentUserArgumentResolver(UserService userService) {
+        this.userService = userService;
+    }
+
+    @Override
+    public boolean supportsParameter(MethodParameter parameter) {
+        return parameter.hasParameterAnnotation(CurrentUser.class) && parameter.getParameterType() == Long.class;
+    }
+
+    @Override
+    public Object resolveArgument(MethodParameter parameter, ModelAndViewContainer mavContainer,
+                                  NativeWebRequest webRequest, WebDataBinderFactory binderFactory) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || authentication instanceof AnonymousAuthenticationToken) {
+            return null;
+        }
+        if (authentication.getPrincipal() instanceof AuthenticatedUser user && user.getId() != null) {
+            return user.getId();
+        }
+        return userService.findByUsername(authentication.getName()).map(User::getId).orElse(null);
+    }
+}
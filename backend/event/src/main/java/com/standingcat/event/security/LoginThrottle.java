@@ -0,0 +1,96 @@
+package com.standingcat.event.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//Caps login attempts per client IP and failed logins per username from one IP within a fixed window, so guessing
+//passwords is turned away before it costs a BCrypt check. Failures are not counted per username alone, otherwise
+//anyone could lock a user out by guessing wrong on purpose. A window starts at the first counted attempt
+//and the entry simply expires when it ends. A successful login clears the failures from that IP.
+@Component
+public class LoginThrottle {
+    private final Cache<String, Window> attemptsByIp;
+    private final Cache<String, Window> failuresByUsernameAndIp;
+    private final Duration window;
+    private final int maxAttemptsPerIp;
+    private final int maxFailuresPerUsername;
+    private final Counter throttledByIp;
+    private final Counter throttledByUsername;
+
+    public LoginThrottle(@Value("${security.login-throttle.window:15m}") Duration window,
+                         @Value("${security.login-throttle.max-attempts-per-ip:50}") int maxAttemptsPerIp,
+                         @Value("${security.login-throttle.max-failures-per-username:5}") int maxFailuresPerUsername,
+                         @Value("${security.login-throttle.max-keys:100000}") long maxKeys,
+                         MeterRegistry meterRegistry) {
+        this.window = window;
+        this.maxAttemptsPerIp = maxAttemptsPerIp;
+        this.maxFailuresPerUsername = maxFailuresPerUsername;
+        this.attemptsByIp = Caffeine.newBuilder().maximumSize(maxKeys).expireAfterWrite(window).build();
+        this.failuresByUsernameAndIp = Caffeine.newBuilder().maximumSize(maxKeys).expireAfterWrite(window).build();
+        this.throttledByIp = throttled(meterRegistry, "ip");
+        this.throttledByUsername = throttled(meterRegistry, "username");
+    }
+
+    private static Counter throttled(MeterRegistry meterRegistry, String by) {
+        return Counter.builder("auth.login.throttled")
+                .description("Login attempts refused before checking the password")
+                .tag("by", by)
+                .register(meterRegistry);
+    }
+
+    //counts the attempt against the IP, empty if it may go ahead, otherwise how long until it may
+    public Optional<Duration> tryAcquire(String clientIp, String username) {
+        Instant now = Instant.now();
+        Window failures = failuresByUsernameAndIp.getIfPresent(key(clientIp, username));
+        if (failures != null && failures.count.get() >= maxFailuresPerUsername) {
+            throttledByUsername.increment();
+            return Optional.of(failures.remaining(now, window));
+        }
+        Window attempts = attemptsByIp.get(key(clientIp), ip -> new Window(now));
+        if (attempts.count.incrementAndGet() > maxAttemptsPerIp) {
+            throttledByIp.increment();
+            return Optional.of(attempts.remaining(now, window));
+        }
+        return Optional.empty();
+    }
+
+    public void failed(String clientIp, String username) {
+        failuresByUsernameAndIp.get(key(clientIp, username), name -> new Window(Instant.now())).count.incrementAndGet();
+    }
+
+    public void succeeded(String clientIp, String username) {
+        failuresByUsernameAndIp.invalidate(key(clientIp, username));
+    }
+
+    //an address never contains a NUL, so no username can make two pairs share a key
+    private static String key(String clientIp, String username) {
+        return key(clientIp) + '\0' + key(username);
+    }
+
+    private static String key(String value) {
+        return value == null ? "" : value;
+    }
+
+    private static final class Window {
+        private final Instant start;
+        private final AtomicInteger count = new AtomicInteger();
+
+        private Window(Instant start) {
+            this.start = start;
+        }
+
+        private Duration remaining(Instant now, Duration window) {
+            Duration left = Duration.between(now, start.plus(window));
+            return left.isNegative() ? Duration.ZERO : left;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.standingcat.event.security;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.TimeUnit;
+
+//Times the wrapped encoder. BCrypt is deliberately slow, so auth.password.matches is most of a login
+//and auth.password.encode most of a registration.
+public class TimedPasswordEncoder implements PasswordEncoder {
+    private final PasswordEncoder delegate;
+    private final Timer encodeTimer;
+    private final Timer matchedTimer;
+    private final Timer mismatchedTimer;
+
+    public TimedPasswordEncoder(PasswordEncoder delegate, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.encodeTimer = Timer.builder("auth.password.encode")
+                .description("Time to hash a password")
+                .register(meterRegistry);
+        this.matchedTimer = matchesTimer(meterRegistry, "true");
+        this.mismatchedTimer = matchesTimer(meterRegistry, "false");
+    }
+
+    private static Timer matchesTimer(MeterRegistry meterRegistry, String matched) {
+        return Timer.builder("auth.password.matches")
+                .description("Time to check a password against its hash")
+                .tag("matched", matched)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return encodeTimer.record(() -> delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        long start = System.nanoTime();
+        boolean matches = delegate.matches(rawPassword, encodedPassword);
+        (matches ? matchedTimer : mismatchedTimer).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return matches;
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+}
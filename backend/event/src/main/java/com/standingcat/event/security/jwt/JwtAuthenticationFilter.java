@@ -1,26 +1,33 @@
 package com.standingcat.event.security.jwt;
 
 import java.io.IOException;
+import java.util.Optional;
+import java.util.Set;
+
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import com.standingcat.event.security.AuthenticatedUser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
-import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 import jakarta.servlet.http.Cookie;
 
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
+    private static final Logger log = LoggerFactory.getLogger(JwtAuthenticationFilter.class);
+
     private final JwtUtil jwtUtil;
-    private final UserDetailsService userDetailsService;
+    private final PrincipalCache principalCache;
 
-    public JwtAuthenticationFilter(JwtUtil jwtUtil, UserDetailsService userDetailsService) {
+    public JwtAuthenticationFilter(JwtUtil jwtUtil, PrincipalCache principalCache) {
         this.jwtUtil = jwtUtil;
-        this.userDetailsService = userDetailsService;
+        this.principalCache = principalCache;
     }
 
     @Override
@@ -28,48 +35,49 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             throws ServletException, IOException {
         String jwt = null;
         String authHeader = request.getHeader("Authorization");
-        System.out.println("checking auth header");
 
         //try Authorization header
         if (authHeader != null && authHeader.startsWith("Bearer ")) {
-            System.out.println("setting jwt");
             jwt = authHeader.substring(7);
         }
-        System.out.println("not found trying cookies");
         //if not found, try cookies
         if (jwt == null && request.getCookies() != null) {
             for (Cookie cookie : request.getCookies()) {
-                System.out.println("Checking cookie " + cookie);
                 if ("jwt".equals(cookie.getName())) {
-                    System.out.println("Setting cookie " + cookie.getValue());
                     jwt = cookie.getValue();
                 }
             }
         }
 
-        System.out.println("no token, continuing");
-
         //If no token, just continue
         if (jwt == null) {
-            System.out.println("jwt is null");
             filterChain.doFilter(request, response);
             return;
         }
 
-        final String username = jwtUtil.extractUsername(jwt);
+        //one parse and signature check for the whole request, an invalid or expired token just leaves it unauthenticated
+        Optional<VerifiedToken> token = jwtUtil.verify(jwt);
 
-        if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-            System.out.println("checking token validation");
-            if (jwtUtil.validateToken(jwt, userDetails)) {
-                System.out.println("jwtutil validate token is true");
+        if (token.isPresent() && SecurityContextHolder.getContext().getAuthentication() == null) {
+            String username = token.get().getUsername();
+            Optional<Set<String>> grantedRoles = principalCache.grantedRoles(username);
+            if (grantedRoles.isPresent()) {
+                //principal comes from the token, only roles the user still holds are kept
+                UserDetails userDetails = new AuthenticatedUser(token.get().getUserId(), username, "",
+                        token.get().getRoles().stream()
+                                .filter(grantedRoles.get()::contains)
+                                .map(SimpleGrantedAuthority::new)
+                                .toList());
                 UsernamePasswordAuthenticationToken authToken =
                         new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
                 authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
                 SecurityContextHolder.getContext().setAuthentication(authToken);
+            } else {
+                log.debug("Token for unknown user {} ignored", username);
             }
+        } else if (token.isEmpty()) {
+            log.debug("Invalid or expired token on {} {}", request.getMethod(), request.getRequestURI());
         }
-        System.out.println("doing filter");
         filterChain.doFilter(request, response);
     }
 
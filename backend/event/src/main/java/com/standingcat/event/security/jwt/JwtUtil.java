@@ -1,61 +1,187 @@
 package com.standingcat.event.security.jwt;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.standingcat.event.security.AuthenticatedUser;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 @Component
 public class JwtUtil {
     private final SecretKey key;
     private final long expiration;
+    //built once, the parser is immutable and safe to share between request threads
+    private final JwtParser parser;
+    //recently verified tokens keyed by a SHA-256 of the token, null when disabled (size 0)
+    private final Cache<String, VerifiedToken> verified;
 
+    private final Timer parsedValid;
+    private final Timer parsedInvalid;
+    private final Timer cachedValid;
+    private final Timer cachedInvalid;
+
+    @Autowired
     public JwtUtil(
             @Value("${jwt.secret}") String secret,
-            @Value("${jwt.expiration:86400000}") long expiration
+            @Value("${jwt.expiration:86400000}") long expiration,
+            @Value("${jwt.verified-cache.size:10000}") long verifiedCacheSize,
+            @Value("${jwt.verified-cache.ttl:10m}") Duration verifiedCacheTtl,
+            MeterRegistry meterRegistry
     ) {
         //decode Base64 string from the env into a secure key
         this.key = Keys.hmacShaKeyFor(Decoders.BASE64.decode(secret));
         this.expiration = expiration;
+        this.parser = Jwts.parserBuilder()
+                .setSigningKey(key)
+                .build();
+        this.verified = verifiedCacheSize > 0
+                ? Caffeine.newBuilder()
+                        .maximumSize(verifiedCacheSize)
+                        .expireAfterWrite(verifiedCacheTtl)
+                        .build()
+                : null;
+        this.parsedValid = verifyTimer(meterRegistry, "parse", "valid");
+        this.parsedInvalid = verifyTimer(meterRegistry, "parse", "invalid");
+        this.cachedValid = verifyTimer(meterRegistry, "cache", "valid");
+        this.cachedInvalid = verifyTimer(meterRegistry, "cache", "invalid");
     }
 
+    //outside Spring (tests, benchmarks), metrics go to the global registry
+    public JwtUtil(String secret, long expiration, long verifiedCacheSize) {
+        this(secret, expiration, verifiedCacheSize, Duration.ofMinutes(10), Metrics.globalRegistry);
+    }
+
+    private static Timer verifyTimer(MeterRegistry meterRegistry, String source, String result) {
+        return Timer.builder("jwt.verify")
+                .description("Time to verify a JWT, answered from the cache or by parsing it")
+                .tags("source", source, "result", result)
+                .register(meterRegistry);
+    }
+
+    //the app_user id goes in as "uid" when the principal knows it, so requests don't have to look it up
     public String generateToken(UserDetails userDetails) {
+        Long userId = userDetails instanceof AuthenticatedUser user ? user.getId() : null;
         return Jwts.builder()
                 .setSubject(userDetails.getUsername())
-                .claim("roles", userDetails.getAuthorities())
+                .claim("uid", userId) //a null claim is left out
+                .claim("roles", userDetails.getAuthorities().stream()
+                        .map(GrantedAuthority::getAuthority)
+                        .toList())
                 .setIssuedAt(new Date())
                 .setExpiration(new Date(System.currentTimeMillis() + expiration))
                 .signWith(key, SignatureAlgorithm.HS256)
                 .compact();
     }
 
+    //Parses and checks the token once. Empty if the signature is wrong, it is malformed or it has expired.
+    //A token seen recently is answered from the cache without re-verifying the HMAC or re-reading the JSON,
+    //its expiry is still checked on every call.
+    public Optional<VerifiedToken> verify(String token) {
+        if (token == null || token.isBlank()) {
+            return Optional.empty();
+        }
+        long start = System.nanoTime();
+        String cacheKey = verified != null ? sha256(token) : null;
+        VerifiedToken cached = cacheKey != null ? verified.getIfPresent(cacheKey) : null;
+
+        Optional<VerifiedToken> result;
+        Timer timer;
+        if (cached != null) {
+            result = cached.isExpired(Instant.now()) ? Optional.empty() : Optional.of(cached);
+            timer = result.isPresent() ? cachedValid : cachedInvalid;
+        } else {
+            result = parse(token);
+            if (cacheKey != null) {
+                result.ifPresent(verifiedToken -> verified.put(cacheKey, verifiedToken));
+            }
+            timer = result.isPresent() ? parsedValid : parsedInvalid;
+        }
+        timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return result;
+    }
+
+    private Optional<VerifiedToken> parse(String token) {
+        try {
+            Claims claims = parser.parseClaimsJws(token).getBody();
+            //parseClaimsJws already rejects expired tokens, a token without exp is not accepted either
+            if (claims.getSubject() == null || claims.getExpiration() == null) {
+                return Optional.empty();
+            }
+            Long userId = claims.get("uid") instanceof Number uid ? uid.longValue() : null;
+            return Optional.of(new VerifiedToken(
+                    claims.getSubject(), userId, roleNames(claims.get("roles")), claims.getExpiration().toInstant()));
+        } catch (JwtException | IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+
+    //throws for a token that doesn't verify, like parsing it directly did
     public String extractUsername(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(key)
-                .build()
-                .parseClaimsJws(token)
-                .getBody()
-                .getSubject();
+        return verify(token)
+                .map(VerifiedToken::getUsername)
+                .orElseThrow(() -> new JwtException("Invalid or expired JWT."));
+    }
+
+    public List<String> extractRoles(String token) {
+        return verify(token).map(VerifiedToken::getRoles).orElse(List.of());
     }
 
     public boolean validateToken(String token, UserDetails userDetails) {
-        String username = extractUsername(token);
-        return username.equals(userDetails.getUsername()) && !isExpired(token);
+        return verify(token)
+                .map(verifiedToken -> verifiedToken.getUsername().equals(userDetails.getUsername()))
+                .orElse(false);
     }
 
-    private boolean isExpired(String token) {
-        Date expirationDate = Jwts.parserBuilder()
-                .setSigningKey(key)
-                .build()
-                .parseClaimsJws(token)
-                .getBody()
-                .getExpiration();
-        return expirationDate.before(new Date());
+    //role names carried by the token. tokens issued before roles were plain strings hold {"authority": ...} objects
+    private static List<String> roleNames(Object roles) {
+        if (!(roles instanceof Collection<?> values)) {
+            return List.of();
+        }
+        List<String> names = new ArrayList<>();
+        for (Object value : values) {
+            if (value instanceof String name) {
+                names.add(name);
+            } else if (value instanceof Map<?, ?> map && map.get("authority") instanceof String name) {
+                names.add(name);
+            }
+        }
+        return List.copyOf(names);
+    }
+
+    private static String sha256(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e); //every JVM ships it
+        }
     }
 }
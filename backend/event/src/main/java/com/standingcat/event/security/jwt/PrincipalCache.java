@@ -0,0 +1,43 @@
+package com.standingcat.event.security.jwt;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.standingcat.event.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.Set;
+
+//Roles currently granted to each user, so the JWT filter can trust a token's role claim without a
+//user lookup on every request. A token is only ever allowed the roles it carries AND the user still has,
+//so revoking a role takes effect as soon as the entry is evicted (UserService does that on role changes)
+//or expires, instead of lasting as long as the token.
+@Component
+public class PrincipalCache {
+    private final UserRepository userRepository;
+    private final Cache<String, Set<String>> rolesByUsername;
+
+    public PrincipalCache(UserRepository userRepository,
+                          @Value("${security.principal-cache.max-size:10000}") long maxSize,
+                          @Value("${security.principal-cache.ttl:5m}") Duration ttl) {
+        this.userRepository = userRepository;
+        this.rolesByUsername = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    //empty when the user no longer exists
+    public Optional<Set<String>> grantedRoles(String username) {
+        return Optional.ofNullable(rolesByUsername.get(username, key -> userRepository.findByUsername(key)
+                .map(user -> Set.copyOf(user.getRoles()))
+                .orElse(null)));
+    }
+
+    //a load that is in flight when this runs is discarded, so stale roles can't be put back
+    public void evict(String username) {
+        rolesByUsername.invalidate(username);
+    }
+}
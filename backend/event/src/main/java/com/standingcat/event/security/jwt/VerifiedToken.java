@@ -0,0 +1,19 @@
+package com.standingcat.event.security.jwt;
+
+import lombok.Value;
+
+import java.time.Instant;
+import java.util.List;
+
+//what a token says once its signature and expiry have been checked
+@Value
+public class VerifiedToken {
+    String username;
+    Long userId; //null for tokens issued before the uid claim
+    List<String> roles;
+    Instant expiresAt;
+
+    public boolean isExpired(Instant now) {
+        return !expiresAt.isAfter(now);
+    }
+}
@@ -0,0 +1,41 @@
+package com.standingcat.event.service;
+
+import com.cloudinary.Cloudinary;
+import com.standingcat.event.exception.CloudinaryNoReturnException;
+import jakarta.annotation.Resource;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+
+@Component
+@ConditionalOnProperty(name = "image.store", havingValue = "cloudinary", matchIfMissing = true)
+public class CloudinaryImageStore implements ImageStore {
+    @Resource
+    private Cloudinary cloudinary;
+
+    @Override
+    public StoredImage store(Path file, String folder, String filename) throws IOException {
+        Map<String, Object> options = Map.of(
+                "folder", folder,
+                "filename_override", filename,
+                "use_filename", true,
+                "unique_filename", true
+        );
+        //a File is streamed by the uploader rather than loaded as a byte[]
+        Map<?, ?> uploadResult = cloudinary.uploader().upload(file.toFile(), options);
+        String imageUrl = (String) uploadResult.get("secure_url");
+        String publicId = (String) uploadResult.get("public_id");
+        if (imageUrl == null) {
+            throw new CloudinaryNoReturnException("Cloudinary did not return URL of uploaded image.");
+        }
+        return new StoredImage(imageUrl, publicId);
+    }
+
+    @Override
+    public void delete(String publicId) throws IOException {
+        cloudinary.uploader().destroy(publicId, Map.of());
+    }
+}
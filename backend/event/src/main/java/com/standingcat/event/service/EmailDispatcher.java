@@ -0,0 +1,248 @@
+package com.standingcat.event.service;
+
+import com.standingcat.event.model.OutboundEmail;
+import com.standingcat.event.repository.OutboundEmailRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+//Drains the email outbox in the background, so SMTP latency never reaches a request or a DB transaction.
+//Each batch goes out in one JavaMailSender.send call, which JavaMailSenderImpl sends over a single connection.
+//A batch is claimed before it is sent: in a short transaction of its own the rows are locked and their next attempt
+//pushed claim-timeout ahead, so another node or an overlapping run doesn't pick them up too. If the sender dies
+//mid-batch they come due again after that and are sent once more.
+//A failed email is retried with exponential backoff until max-attempts, then left as FAILED.
+//When a whole batch fails (server down, auth rejected) the dispatcher stops polling for a while, backing off
+//the same way, instead of hammering the server and piling up attempts on every queued email.
+@Component
+public class EmailDispatcher {
+    private static final Logger log = LoggerFactory.getLogger(EmailDispatcher.class);
+
+    private final JavaMailSender mailSender;
+    private final OutboundEmailRepository outboundEmailRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final String from;
+    private final int batchSize;
+    private final int maxBatchesPerRun;
+    private final int maxAttempts;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+    private final Duration claimTimeout;
+    private final Timer sendSuccess;
+    private final Timer sendError;
+    private final Counter sentMessages;
+    private final Counter failedMessages;
+
+    //only touched from the scheduler thread
+    private int consecutiveBatchFailures = 0;
+    private LocalDateTime pausedUntil = LocalDateTime.MIN;
+
+    public EmailDispatcher(JavaMailSender mailSender,
+                           OutboundEmailRepository outboundEmailRepository,
+                           TransactionTemplate transactionTemplate,
+                           MeterRegistry meterRegistry,
+                           @Value("${email.from:noreply@standingcat.com}") String from,
+                           @Value("${email.outbox.batch-size:50}") int batchSize,
+                           @Value("${email.outbox.max-batches-per-run:10}") int maxBatchesPerRun,
+                           @Value("${email.outbox.max-attempts:8}") int maxAttempts,
+                           @Value("${email.outbox.initial-backoff:10s}") Duration initialBackoff,
+                           @Value("${email.outbox.max-backoff:30m}") Duration maxBackoff,
+                           @Value("${email.outbox.claim-timeout:5m}") Duration claimTimeout) {
+        this.mailSender = mailSender;
+        this.outboundEmailRepository = outboundEmailRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.from = from;
+        this.batchSize = batchSize;
+        this.maxBatchesPerRun = maxBatchesPerRun;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        this.claimTimeout = claimTimeout;
+        Gauge.builder("email.outbox.pending", outboundEmailRepository,
+                        repository -> repository.countByStatus(OutboundEmail.Status.PENDING))
+                .description("Emails waiting in the outbox")
+                .register(meterRegistry);
+        this.sendSuccess = sendTimer(meterRegistry, "success");
+        this.sendError = sendTimer(meterRegistry, "error");
+        this.sentMessages = messageCounter(meterRegistry, "sent");
+        this.failedMessages = messageCounter(meterRegistry, "failed");
+    }
+
+    //one SMTP round of a whole batch, connect included
+    private static Timer sendTimer(MeterRegistry meterRegistry, String outcome) {
+        return Timer.builder("email.send")
+                .description("Time spent sending a batch over SMTP")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    //per email, a batch that partly failed counts on both
+    private static Counter messageCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("email.messages")
+                .description("Emails sent or failed, one attempt each")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${email.outbox.poll-interval:5s}")
+    public void dispatch() {
+        //keep draining while batches come back full and clean, bounded so one run can't monopolise the scheduler
+        for (int i = 0; i < maxBatchesPerRun; i++) {
+            if (!dispatchBatch()) {
+                return;
+            }
+        }
+    }
+
+    //sends one batch, true if there may be more due right now
+    boolean dispatchBatch() {
+        LocalDateTime now = LocalDateTime.now();
+        if (now.isBefore(pausedUntil)) {
+            return false;
+        }
+        List<OutboundEmail> due = transactionTemplate.execute(status -> claim(now));
+        if (due.isEmpty()) {
+            return false;
+        }
+
+        List<OutboxMessage> batch = due.stream().map(this::toMessage).toList();
+
+        Map<Object, Exception> failed;
+        long start = System.nanoTime();
+        try {
+            mailSender.send(batch.toArray(SimpleMailMessage[]::new));
+            sendSuccess.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            failed = Map.of();
+        } catch (MailSendException e) {
+            sendError.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            //lists every message that did not go out, including all of them when the connection failed
+            failed = e.getFailedMessages();
+            if (failed.isEmpty()) {
+                failed = allFailed(batch, e);
+            }
+        } catch (MailException e) {
+            sendError.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            failed = allFailed(batch, e);
+        }
+
+        int failures = 0;
+        for (OutboxMessage message : batch) {
+            Exception error = failed.get(message);
+            if (error == null) {
+                markSent(message.email, now);
+            } else {
+                markFailed(message.email, error, now);
+                failures++;
+            }
+        }
+        outboundEmailRepository.saveAll(due);
+        sentMessages.increment(due.size() - failures);
+        failedMessages.increment(failures);
+
+        if (failures == due.size()) {
+            consecutiveBatchFailures++;
+            pausedUntil = now.plus(backoff(consecutiveBatchFailures));
+            log.warn("Email batch of {} failed, pausing dispatch until {}", due.size(), pausedUntil);
+            return false;
+        }
+        consecutiveBatchFailures = 0;
+        if (failures > 0) {
+            //the failed ones are backed off, leave the rest of the outbox for the next run
+            log.warn("{} of {} emails failed, will retry", failures, due.size());
+            return false;
+        }
+        return due.size() == batchSize;
+    }
+
+    //the due rows, locked until this commits, with the next attempt moved past the send
+    private List<OutboundEmail> claim(LocalDateTime now) {
+        List<OutboundEmail> due = outboundEmailRepository.findDue(now, Limit.of(batchSize));
+        due.forEach(email -> email.setNextAttemptAt(now.plus(claimTimeout)));
+        outboundEmailRepository.saveAll(due);
+        return due;
+    }
+
+    private OutboxMessage toMessage(OutboundEmail email) {
+        OutboxMessage message = new OutboxMessage(email);
+        message.setFrom(from);
+        message.setTo(email.getRecipient());
+        message.setSubject(email.getSubject());
+        message.setText(email.getBody());
+        return message;
+    }
+
+    private void markSent(OutboundEmail email, LocalDateTime now) {
+        email.setStatus(OutboundEmail.Status.SENT);
+        email.setSentAt(now);
+        email.setAttempts(email.getAttempts() + 1);
+        email.setLastError(null);
+    }
+
+    private void markFailed(OutboundEmail email, Exception error, LocalDateTime now) {
+        int attempts = email.getAttempts() + 1;
+        email.setAttempts(attempts);
+        email.setLastError(truncate(String.valueOf(error.getMessage())));
+        if (attempts >= maxAttempts) {
+            email.setStatus(OutboundEmail.Status.FAILED);
+            log.error("Giving up on email {} to {} after {} attempts", email.getId(), email.getRecipient(), attempts);
+        } else {
+            email.setNextAttemptAt(now.plus(backoff(attempts)));
+        }
+    }
+
+    //initialBackoff doubled per attempt, capped at maxBackoff
+    Duration backoff(int attempts) {
+        int doublings = Math.min(attempts - 1, 30);
+        Duration delay = initialBackoff.multipliedBy(1L << doublings);
+        return delay.compareTo(maxBackoff) > 0 ? maxBackoff : delay;
+    }
+
+    private static Map<Object, Exception> allFailed(List<OutboxMessage> batch, Exception error) {
+        Map<Object, Exception> failed = new IdentityHashMap<>();
+        batch.forEach(message -> failed.put(message, error));
+        return failed;
+    }
+
+    //MailSendException reports failures in a map keyed by message. SimpleMailMessage compares by content, so two
+    //identical emails in a batch would share one entry there, these are only ever equal to themselves
+    private static final class OutboxMessage extends SimpleMailMessage {
+        private final OutboundEmail email;
+
+        OutboxMessage(OutboundEmail email) {
+            this.email = email;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return this == other;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(this);
+        }
+    }
+
+    private static String truncate(String message) {
+        return message.length() > 1000 ? message.substring(0, 1000) : message;
+    }
+}
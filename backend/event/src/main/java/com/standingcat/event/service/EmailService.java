@@ -1,27 +1,24 @@
 package com.standingcat.event.service;
 
+import com.standingcat.event.repository.OutboundEmailRepository;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.stereotype.Service;
+import jakarta.transaction.Transactional;
+
+import java.time.LocalDateTime;
 
 @Service
 public class EmailService {
     @Autowired
-    private JavaMailSender mailSender;
-    public void sendEnrollmentConfirmation(String toEmail, String eventTitle) {
-        //WIP
-        SimpleMailMessage message = new SimpleMailMessage();
-        message.setFrom("realemail@something.com"); //change this to match email property later
-        message.setSubject("Event Registration Confirmation");
-        message.setTo(toEmail);
-        message.setText("Your registration to " + eventTitle + " has been confirmed."); //fill this with more info later
-        try {
-            mailSender.send(message);
-            System.out.println("Enrollment confirmation email sent to: " + toEmail);
-        } catch (Exception e) {
-            System.err.println("Failed to send email to " + toEmail + ": " + e.getMessage());
-            //reminder: log the error properly in a real application
-        }
+    private OutboundEmailRepository outboundEmailRepository;
+
+    //Queues the email in the outbox as part of the caller's transaction, so it only goes out if the enrollment commits.
+    //Nothing here talks to SMTP, EmailDispatcher sends it in the background.
+    //Address and title are read by the insert itself, the caller doesn't have to load the user or the event.
+    @Transactional
+    public void sendEnrollmentConfirmation(Long userId, Long eventId) {
+        //fill this with more info later
+        outboundEmailRepository.enqueueEnrollmentConfirmation(userId, eventId,
+                "Event Registration Confirmation", LocalDateTime.now());
     }
 }
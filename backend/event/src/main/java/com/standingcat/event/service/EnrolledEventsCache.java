@@ -0,0 +1,91 @@
+package com.standingcat.event.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+
+//Per user, the ids of the events they are enrolled in as a sorted long[], so "which of these cards am I enrolled in"
+//is a binary search per card instead of queries. Loaded the first time a user asks, then kept in step after each
+//commit. Arrays are replaced, never changed, so a reader can keep using the one it got.
+//Updates go through the cache's compute, which waits for a load of the same user that is still running.
+@Component
+public class EnrolledEventsCache {
+    private static final long[] NONE = new long[0];
+
+    private final Cache<Long, long[]> enrolled;
+
+    public EnrolledEventsCache(@Value("${enrollment.check-cache.max-size:100000}") long maxSize,
+                               @Value("${enrollment.check-cache.ttl:30m}") Duration ttl,
+                               MeterRegistry meterRegistry) {
+        this.enrolled = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterAccess(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, enrolled, "enrollment.enrolled-events");
+    }
+
+    //the ids out of eventIds the user is enrolled in, in the order asked. loader returns all of the user's event ids
+    public List<Long> enrolledAmong(Long userId, Collection<Long> eventIds, Function<Long, List<Long>> loader) {
+        long[] ids = enrolled.get(userId, id -> sorted(loader.apply(id)));
+        return eventIds.stream()
+                .filter(Objects::nonNull)
+                .filter(eventId -> Arrays.binarySearch(ids, eventId) >= 0)
+                .distinct()
+                .toList();
+    }
+
+    //call after commit. ignored if the user isn't loaded, the next load reads it anyway
+    public void added(Long userId, Long eventId) {
+        enrolled.asMap().computeIfPresent(userId, (id, ids) -> {
+            int at = Arrays.binarySearch(ids, eventId);
+            if (at >= 0) {
+                return ids;
+            }
+            int insert = -at - 1;
+            long[] updated = new long[ids.length + 1];
+            System.arraycopy(ids, 0, updated, 0, insert);
+            updated[insert] = eventId;
+            System.arraycopy(ids, insert, updated, insert + 1, ids.length - insert);
+            return updated;
+        });
+    }
+
+    //call after commit
+    public void removed(Long userId, Long eventId) {
+        enrolled.asMap().computeIfPresent(userId, (id, ids) -> {
+            int at = Arrays.binarySearch(ids, eventId);
+            if (at < 0) {
+                return ids;
+            }
+            long[] updated = new long[ids.length - 1];
+            System.arraycopy(ids, 0, updated, 0, at);
+            System.arraycopy(ids, at + 1, updated, at, ids.length - at - 1);
+            return updated;
+        });
+    }
+
+    //for changes that don't say whose enrollments moved (bulk import, a deleted event), users are reloaded on demand
+    public void evictAll() {
+        enrolled.invalidateAll();
+    }
+
+    private static long[] sorted(List<Long> eventIds) {
+        if (eventIds.isEmpty()) {
+            return NONE;
+        }
+        long[] ids = eventIds.stream().mapToLong(Long::longValue).toArray();
+        Arrays.sort(ids);
+        return ids;
+    }
+}
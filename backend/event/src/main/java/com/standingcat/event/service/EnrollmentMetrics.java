@@ -0,0 +1,68 @@
+package com.standingcat.event.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+//Counters for what happens to enrollment attempts. Request latency per endpoint comes from
+//http.server.requests, these answer why requests ended the way they did.
+@Component
+public class EnrollmentMetrics {
+    private final Counter success;
+    private final Counter full;
+    private final Counter duplicate;
+    private final Counter waitlisted;
+    private final Counter promoted;
+    //turned away by the in-memory SeatCounter before any query, the cheap path the counter exists for
+    private final Counter counterRejected;
+    //turned away by the conditional update, the counter let it through (not tracking the event yet, or stale).
+    //a high rate next to counterRejected means the counter is not doing its job
+    private final Counter databaseRejected;
+
+    public EnrollmentMetrics(MeterRegistry meterRegistry) {
+        this.success = outcome(meterRegistry, "success");
+        this.full = outcome(meterRegistry, "full");
+        this.duplicate = outcome(meterRegistry, "duplicate");
+        this.waitlisted = outcome(meterRegistry, "waitlisted");
+        this.promoted = Counter.builder("waitlist.promotions")
+                .description("People moved from a waitlist into an enrollment")
+                .register(meterRegistry);
+        this.counterRejected = capacityCheck(meterRegistry, "counter");
+        this.databaseRejected = capacityCheck(meterRegistry, "database");
+    }
+
+    private static Counter outcome(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("enrollment.outcomes")
+                .description("Enrollment attempts by how they ended")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private static Counter capacityCheck(MeterRegistry meterRegistry, String stage) {
+        return Counter.builder("enrollment.capacity.rejections")
+                .description("Enrollments turned away for lack of seats, by where the check failed")
+                .tag("stage", stage)
+                .register(meterRegistry);
+    }
+
+    public void enrolled() {
+        success.increment();
+    }
+
+    public void full(boolean byDatabase) {
+        full.increment();
+        (byDatabase ? databaseRejected : counterRejected).increment();
+    }
+
+    public void duplicate() {
+        duplicate.increment();
+    }
+
+    public void waitlisted() {
+        waitlisted.increment();
+    }
+
+    public void promoted(int count) {
+        promoted.increment(count);
+    }
+}
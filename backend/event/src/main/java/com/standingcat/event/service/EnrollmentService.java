@@ -1,19 +1,40 @@
 package com.standingcat.event.service;
 
+import com.standingcat.event.dto.EnrollmentPageResponse;
+import com.standingcat.event.dto.EnrollmentResponse;
+import com.standingcat.event.dto.EventCursor;
+import com.standingcat.event.dto.MyEnrollmentPageResponse;
+import com.standingcat.event.dto.MyEnrollmentResponse;
+import com.standingcat.event.dto.RosterCursor;
 import com.standingcat.event.exception.*;
 import com.standingcat.event.model.Enrollment;
 import com.standingcat.event.model.Event;
 import com.standingcat.event.model.User;
 import com.standingcat.event.repository.EnrollmentRepository;
+import com.standingcat.event.repository.EventRepository;
 import jakarta.transaction.Transactional;
+import org.hibernate.Hibernate;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 
+import java.sql.SQLException;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.List;
+import java.util.Set;
 
 @Service
 public class EnrollmentService {
+    //a page of event cards, with room to spare
+    public static final int MAX_CHECK_IDS = 500;
+    //rosters are read by admins in bigger pages than the public listing
+    public static final int MAX_ROSTER_PAGE_SIZE = 1000;
+    //SQL states of a violated unique key and of a missing parent row (Postgres, H2)
+    private static final String UNIQUE_VIOLATION = "23505";
+    private static final Set<String> FOREIGN_KEY_VIOLATIONS = Set.of("23503", "23506");
+
     @Autowired
     private EnrollmentRepository enrollmentRepository;
 
@@ -21,75 +42,260 @@ public class EnrollmentService {
     private UserService userService;
 
     @Autowired
-    private EventService eventService;
+    private EmailService emailService;
 
     @Autowired
-    private EmailService emailService;
+    private EventRepository eventRepository;
 
-    @Transactional
-    public Enrollment enrollUserToEvent(Long userId, Long eventId) {
-        User user = userService.findById(userId)
-                .orElseThrow(() -> new UserNotFoundException("User not found."));
-        Event event = eventService.getEventById(eventId)
-                .orElseThrow(() -> new EventNotFoundException("Event not found."));
+    @Autowired
+    private SeatCounter seatCounter;
 
-        //null means unlimited capacity
-        if(event.getCapacity() != null && event.getEnrollments().size() >= event.getCapacity()) {
-            throw new InsufficientCapacityException("Event is at full capacity.");
-        }
+    @Autowired
+    private EventCatalogueCache catalogueCache;
 
-        if(enrollmentRepository.findByUserAndEvent(user, event).isPresent()) {
-            throw new UserAlreadyEnrolledException("User already enrolled.");
-        }
+    @Autowired
+    private WaitlistService waitlistService;
+
+    @Autowired
+    private EnrollmentMetrics enrollmentMetrics;
+
+    @Autowired
+    private SeatAvailabilityBroadcaster seatAvailability;
 
+    @Autowired
+    private EnrolledEventsCache enrolledEvents;
+
+    //Writes first, no reads of the user, the event or existing enrollments up front. The seat is claimed with the
+    //conditional update and the row inserted through references, the (user_id, event_id) unique key is what
+    //turns away a second enrollment. Two statements when it works, plus the confirmation email; the reads that
+    //explain a failure only happen on the failure path.
+    @Transactional
+    public Enrollment enrollUserToEvent(Long userId, Long eventId) {
+        claimSeat(userId, eventId);
+
+        User user = userService.getReference(userId);
+        Event event = eventRepository.getReferenceById(eventId);
         Enrollment enrollment = new Enrollment();
         enrollment.setUser(user);
         enrollment.setEvent(event);
         enrollment.setEnrollmentTime(LocalDateTime.now());
 
-        event.getEnrollments().add(enrollment);
-        user.getEnrollments().add(enrollment);
-        Enrollment savedEnrollment = enrollmentRepository.save(enrollment);
+        Enrollment savedEnrollment;
+        try {
+            //IDENTITY ids, so the insert runs here and a violated key shows up here too
+            savedEnrollment = enrollmentRepository.save(enrollment);
+        } catch (DataIntegrityViolationException e) {
+            //the transaction can't run anything else after this on Postgres, so the SQL state has to tell
+            //the cases apart. the event row is locked by the claim, a missing parent can only be the user
+            String sqlState = sqlState(e);
+            if (UNIQUE_VIOLATION.equals(sqlState)) {
+                enrollmentMetrics.duplicate();
+                throw new UserAlreadyEnrolledException("User already enrolled.");
+            }
+            if (FOREIGN_KEY_VIOLATIONS.contains(sqlState)) {
+                throw new UserNotFoundException("User not found.");
+            }
+            throw e;
+        }
+        //user and event are proxies unless this transaction already loaded them, then their collections are kept in step.
+        //loading every enrollment of a popular event just to add one is what we're avoiding
+        if (Hibernate.isInitialized(event)) {
+            //enrolledCount is not updatable so this only keeps the loaded entity honest
+            event.setEnrolledCount(event.getEnrolledCount() + 1);
+            if (Hibernate.isInitialized(event.getEnrollments())) {
+                event.getEnrollments().add(savedEnrollment);
+            }
+        }
+        if (Hibernate.isInitialized(user) && Hibernate.isInitialized(user.getEnrollments())) {
+            user.getEnrollments().add(savedEnrollment);
+        }
 
-        emailService.sendEnrollmentConfirmation(user.getEmail(), event.getTitle());
+        emailService.sendEnrollmentConfirmation(userId, eventId);
+        TransactionHooks.afterCommit(enrollmentMetrics::enrolled);
+        TransactionHooks.afterCommit(() -> enrolledEvents.added(userId, eventId));
 
         return savedEnrollment;
+    }
 
+    //null capacity means unlimited, the seat is still counted so the listing shows how many are coming.
+    //the counter starts tracking an event from the committed counts after its first claim, or when the database
+    //says it is full. cached snapshots can be behind, a counter primed from one would turn people away wrongly
+    private void claimSeat(Long userId, Long eventId) {
+        SeatCounter.Reservation reservation = seatCounter.tryReserve(eventId);
+        if (reservation.isSoldOut()) {
+            //a second try from someone who already has a seat is a duplicate, not a full event
+            if (enrollmentRepository.existsByUserIdAndEventId(userId, eventId)) {
+                enrollmentMetrics.duplicate();
+                throw new UserAlreadyEnrolledException("User already enrolled.");
+            }
+            enrollmentMetrics.full(false);
+            throw new InsufficientCapacityException("Event is at full capacity.");
+        }
+        TransactionHooks.afterRollback(reservation::cancel);
 
+        if (eventRepository.claimSeat(eventId) == 0) {
+            //nothing failed in the database, so it can still be asked why
+            if (!eventRepository.existsById(eventId)) {
+                throw new EventNotFoundException("Event not found.");
+            }
+            if (enrollmentRepository.existsByUserIdAndEventId(userId, eventId)) {
+                enrollmentMetrics.duplicate();
+                throw new UserAlreadyEnrolledException("User already enrolled.");
+            }
+            seatCounter.soldOut(eventId);
+            enrollmentMetrics.full(true);
+            throw new InsufficientCapacityException("Event is at full capacity.");
+        }
+        if (reservation.isUntracked()) {
+            primeSeatCounter(eventId);
+        }
+        catalogueCache.evictEvent(eventId);
+        TransactionHooks.afterCommit(() -> seatAvailability.seatsChanged(eventId));
     }
 
+    //One read per event and counter lifetime, on this transaction's connection. The claim holds the event row's lock
+    //until commit, so the counts read here, this enrollment included, are the committed ones. The counter only
+    //takes them after the commit, the hook itself doesn't touch the database.
+    private void primeSeatCounter(Long eventId) {
+        for (Object[] row : eventRepository.findSeatCounts(List.of(eventId))) {
+            Integer capacity = (Integer) row[2];
+            int enrolledCount = ((Number) row[1]).intValue();
+            TransactionHooks.afterCommit(() -> seatCounter.prime(eventId, capacity, enrolledCount));
+        }
+    }
+
+    //the first SQL state down the cause chain
+    static String sqlState(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException sqlException && sqlException.getSQLState() != null) {
+                return sqlException.getSQLState();
+            }
+        }
+        return null;
+    }
+
+    //one read of the enrollment by ids, user and event are only looked at to explain a miss
     @Transactional
     public void unEnrollUserFromEvent(Long userId, Long eventId) {
-        User user = userService.findById(userId)
-                .orElseThrow(() -> new UserNotFoundException("User not found."));
-        Event event = eventService.getEventById(eventId)
-                .orElseThrow(() -> new EventNotFoundException("Event not found."));
-        Enrollment enrollment = enrollmentRepository.findByUserAndEvent(user, event)
-                .orElseThrow(() -> new EnrollmentNotFoundException("Enrollment not found."));
-        user.getEnrollments().remove(enrollment);
-        event.getEnrollments().remove(enrollment);
+        Enrollment enrollment = enrollmentRepository.findByUserIdAndEventId(userId, eventId)
+                .orElseThrow(() -> notEnrolled(userId, eventId));
+        //user and event are proxies unless this transaction already loaded them, then their collections are kept in step
+        User user = enrollment.getUser();
+        if (Hibernate.isInitialized(user) && Hibernate.isInitialized(user.getEnrollments())) {
+            user.getEnrollments().remove(enrollment);
+        }
+        Event event = enrollment.getEvent();
+        if (Hibernate.isInitialized(event) && Hibernate.isInitialized(event.getEnrollments())) {
+            event.getEnrollments().remove(enrollment);
+        }
         enrollmentRepository.delete(enrollment);
+        eventRepository.releaseSeat(eventId);
+        TransactionHooks.afterCommit(() -> seatCounter.release(eventId));
+        TransactionHooks.afterCommit(() -> enrolledEvents.removed(userId, eventId));
+        catalogueCache.evictEvent(eventId);
+        TransactionHooks.afterCommit(() -> seatAvailability.seatsChanged(eventId));
+        //the freed seat goes to whoever is next in line, in this same transaction
+        waitlistService.promote(eventId);
+    }
+
+    private RuntimeException notEnrolled(Long userId, Long eventId) {
+        if (userService.findById(userId).isEmpty()) {
+            return new UserNotFoundException("User not found.");
+        }
+        if (!eventRepository.existsById(eventId)) {
+            return new EventNotFoundException("Event not found.");
+        }
+        return new EnrollmentNotFoundException("Enrollment not found.");
+    }
+
+    public enum RosterOrder { TIME, USERNAME }
+
+    //the whole roster in one query (plus the existence check), no entities
+    public List<EnrollmentResponse> getEnrollmentsForEvent(Long eventId) {
+        if (!eventRepository.existsById(eventId)) {
+            throw new EventNotFoundException("Event not found.");
+        }
+        return enrollmentRepository.findRoster(eventId);
+    }
+
+    //first page when cursor is null. a cursor only fits the order it was issued for
+    public EnrollmentPageResponse getRosterPage(Long eventId, String cursor, int limit, RosterOrder order) {
+        if (!eventRepository.existsById(eventId)) {
+            throw new EventNotFoundException("Event not found.");
+        }
+        int pageSize = Math.max(1, Math.min(limit, MAX_ROSTER_PAGE_SIZE));
+        RosterCursor after = cursor != null && !cursor.isBlank() ? RosterCursor.decode(cursor) : null;
+        Long afterId = after != null ? after.getId() : 0L;
+
+        //one extra row tells us whether there is a next page
+        List<EnrollmentResponse> rows;
+        if (order == RosterOrder.USERNAME) {
+            rows = enrollmentRepository.findRosterPageByUsername(
+                    eventId, after != null ? after.getKey() : "", afterId, Limit.of(pageSize + 1));
+        } else {
+            rows = enrollmentRepository.findRosterPageByTime(
+                    eventId, after != null ? parseTime(after.getKey()) : null, afterId, Limit.of(pageSize + 1));
+        }
+
+        boolean hasMore = rows.size() > pageSize;
+        List<EnrollmentResponse> page = hasMore ? rows.subList(0, pageSize) : rows;
+        String nextCursor = null;
+        if (hasMore) {
+            EnrollmentResponse last = page.get(page.size() - 1);
+            String key = order == RosterOrder.USERNAME ? last.getUsername() : last.getEnrollmentTime().toString();
+            nextCursor = new RosterCursor(key, last.getId()).encode();
+        }
+        return new EnrollmentPageResponse(List.copyOf(page), nextCursor);
     }
 
-    public List<Enrollment> getEnrollmentsForEvent(Long eventId) {
-        Event event = eventService.getEventById(eventId)
-                .orElseThrow(() -> new RuntimeException("Event not found."));
-        return enrollmentRepository.findByEvent(event);
+    private static LocalDateTime parseTime(String key) {
+        try {
+            return LocalDateTime.parse(key);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor.");
+        }
     }
 
     public List<Enrollment> getEnrollmentsForUser(Long userId) {
-        User user = userService.findById(userId)
-                .orElseThrow(() -> new RuntimeException("User not found."));
-        return enrollmentRepository.findByUser(user);
+        return enrollmentRepository.findByUserId(userId);
+    }
+
+    //the ids out of eventIds the user is enrolled in, from memory once the user's enrollments are loaded
+    public List<Long> getEnrolledAmong(Long userId, List<Long> eventIds) {
+        if (eventIds.size() > MAX_CHECK_IDS) {
+            throw new IllegalArgumentException("At most " + MAX_CHECK_IDS + " event ids can be checked at once.");
+        }
+        return enrolledEvents.enrolledAmong(userId, eventIds, enrollmentRepository::findEventIdsByUserId);
+    }
+
+    //first page when cursor is null, ordered by event time. upcoming leaves out events that already started
+    public MyEnrollmentPageResponse getEnrollmentsPageForUser(Long userId, String cursor, int limit, boolean upcoming) {
+        int pageSize = Math.max(1, Math.min(limit, EventService.MAX_PAGE_SIZE));
+        //no lower bound at all unless only upcoming events are wanted
+        EventCursor after = new EventCursor(upcoming ? LocalDateTime.now() : null, 0L);
+        if (cursor != null && !cursor.isBlank()) {
+            EventCursor decoded = EventCursor.decode(cursor);
+            if (after.getEventTime() == null || !decoded.getEventTime().isBefore(after.getEventTime())) {
+                after = decoded;
+            }
+        }
+
+        //one extra row tells us whether there is a next page
+        List<MyEnrollmentResponse> rows = enrollmentRepository.findPageForUser(
+                userId, after.getEventTime(), after.getId(), Limit.of(pageSize + 1));
+        boolean hasMore = rows.size() > pageSize;
+        List<MyEnrollmentResponse> page = hasMore ? rows.subList(0, pageSize) : rows;
+        String nextCursor = null;
+        if (hasMore) {
+            MyEnrollmentResponse last = page.get(page.size() - 1);
+            nextCursor = new EventCursor(last.getEventTime(), last.getId()).encode();
+        }
+        return new MyEnrollmentPageResponse(List.copyOf(page), nextCursor);
     }
 
+    //false for an unknown event too, the card asking about it will find out elsewhere
     public Boolean checkUserEnrolled(Long userId, Long eventId) {
-        User user = userService.findById(userId)
-                .orElseThrow(() -> new RuntimeException("User not found"));
-        Event event = eventService.getEventById(eventId)
-                .orElseThrow(() -> new RuntimeException("Event not found."));
-        boolean userEnrolled = enrollmentRepository.findByUserAndEvent(user, event).isPresent();
-        return userEnrolled;
+        return enrollmentRepository.existsByUserIdAndEventId(userId, eventId);
     }
 
 
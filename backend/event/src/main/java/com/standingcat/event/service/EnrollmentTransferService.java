@@ -0,0 +1,252 @@
+package com.standingcat.event.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.standingcat.event.dto.EnrollmentImportResult;
+import com.standingcat.event.dto.EnrollmentResponse;
+import com.standingcat.event.exception.EventNotFoundException;
+import jakarta.transaction.Transactional;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+//Admin bulk paths for an event's attendee list. Both go through plain JDBC a row or a batch at a time,
+//so a list of any size is never held in memory: the export writes each row from the result set cursor
+//straight to the response, the import reads the request body and inserts in fixed size batches.
+@Service
+public class EnrollmentTransferService {
+    public enum Format { CSV, NDJSON }
+
+    //app_user.username is VARCHAR(255), a longer line is not a list of usernames
+    private static final int MAX_USERNAME_LENGTH = 255;
+
+    private static final String CSV_HEADER = "id,enrollmentTime,userId,email,username,eventId";
+
+    private static final String EXPORT_SQL = """
+            SELECT en.id, en.enrollment_time, u.id AS user_id, u.email, u.username, en.event_id
+            FROM enrollment en
+            JOIN app_user u ON u.id = en.user_id
+            WHERE en.event_id = ?
+            ORDER BY en.id
+            """;
+
+    //inserts nothing for an unknown username or a user who is already enrolled, the unique constraint backs this up
+    private static final String IMPORT_SQL = """
+            INSERT INTO enrollment (user_id, event_id, enrollment_time)
+            SELECT u.id, ?, ?
+            FROM app_user u
+            WHERE u.username = ?
+              AND NOT EXISTS (SELECT 1 FROM enrollment en WHERE en.user_id = u.id AND en.event_id = ?)
+            """;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private SeatCounter seatCounter;
+
+    @Autowired
+    private EventCatalogueCache catalogueCache;
+
+    @Autowired
+    private SeatAvailabilityBroadcaster seatAvailability;
+
+    @Autowired
+    private EnrolledEventsCache enrolledEvents;
+
+    @Autowired
+    private WaitlistQueue waitlistQueue;
+
+    @Value("${enrollment.export.fetch-size:500}")
+    private int fetchSize;
+
+    @Value("${enrollment.import.batch-size:500}")
+    private int batchSize;
+
+    public boolean eventExists(Long eventId) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) > 0 FROM app_event WHERE id = ?", Boolean.class, eventId));
+    }
+
+    //in a transaction so drivers that need one to honour the fetch size (Postgres) stream instead of buffering
+    @Transactional
+    public void exportEnrollments(Long eventId, Format format, OutputStream out) throws IOException {
+        Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        if (format == Format.CSV) {
+            writer.write(CSV_HEADER);
+            writer.write('\n');
+        }
+        RowCallbackHandler writeRow = rs -> {
+            EnrollmentResponse row = new EnrollmentResponse(
+                    rs.getLong("id"),
+                    rs.getTimestamp("enrollment_time").toLocalDateTime(),
+                    rs.getLong("user_id"),
+                    rs.getString("email"),
+                    rs.getString("username"),
+                    rs.getLong("event_id"));
+            try {
+                writer.write(format == Format.CSV ? toCsv(row) : objectMapper.writeValueAsString(row));
+                writer.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e); //client went away, stop reading the cursor
+            }
+        };
+        jdbcTemplate.query(connection -> {
+            var statement = connection.prepareStatement(EXPORT_SQL);
+            statement.setFetchSize(fetchSize);
+            statement.setLong(1, eventId);
+            return statement;
+        }, writeRow);
+        writer.flush();
+    }
+
+    //Enrolls the usernames in the body, one per line (a "username" header line is allowed), in a single transaction.
+    //A line too long to be a username fails the whole import with an IllegalArgumentException.
+    //The event row is locked first so concurrent seat claims wait, and a batch is never larger than the seats left,
+    //so capacity can't be overshot. No confirmation emails are sent for imported enrollments.
+    @Transactional
+    public EnrollmentImportResult importEnrollments(Long eventId, InputStream body) throws IOException {
+        EventSeats seats = lockEvent(eventId);
+        //only needed if the driver doesn't say how many rows a batch inserted, the lock keeps it exact
+        int rowsBefore = countEnrollments(eventId);
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+
+        int imported = 0;
+        int skipped = 0;
+        int overCapacity = 0;
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        List<Object[]> batch = new ArrayList<>(batchSize);
+        String line;
+        boolean firstLine = true;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            String username = line.strip();
+            if (username.length() > MAX_USERNAME_LENGTH) {
+                throw new IllegalArgumentException("Line " + lineNumber + " is too long to be a username.");
+            }
+            boolean header = firstLine && username.equalsIgnoreCase("username");
+            firstLine = false;
+            if (header || username.isEmpty()) {
+                continue;
+            }
+            if (seats.left(imported + batch.size()) <= 0) {
+                //the pending batch might fill the event, insert it to learn how many rows really went in
+                int inserted = insertBatch(eventId, batch, rowsBefore + imported);
+                imported += inserted;
+                skipped += batch.size() - inserted;
+                batch.clear();
+                if (seats.left(imported) <= 0) {
+                    overCapacity++;
+                    continue;
+                }
+            }
+            batch.add(new Object[]{eventId, now, username, eventId});
+            if (batch.size() == batchSize) {
+                int inserted = insertBatch(eventId, batch, rowsBefore + imported);
+                imported += inserted;
+                skipped += batch.size() - inserted;
+                batch.clear();
+            }
+        }
+        int inserted = insertBatch(eventId, batch, rowsBefore + imported);
+        imported += inserted;
+        skipped += batch.size() - inserted;
+
+        if (imported > 0) {
+            jdbcTemplate.update("UPDATE app_event SET enrolled_count = enrolled_count + ? WHERE id = ?", imported, eventId);
+            //whoever was waiting for a seat and got one here leaves the line, like a promotion
+            int leftWaitlist = jdbcTemplate.update(
+                    "DELETE FROM waitlist_entry WHERE event_id = ? " +
+                            "AND user_id IN (SELECT user_id FROM enrollment WHERE event_id = ?)", eventId, eventId);
+            if (leftWaitlist > 0) {
+                TransactionHooks.afterCommit(() -> waitlistQueue.evict(eventId));
+            }
+            TransactionHooks.afterCommit(() -> seatCounter.evict(eventId));
+            TransactionHooks.afterCommit(() -> seatAvailability.seatsChanged(eventId));
+            //rows were inserted by username, so there's no telling whose sets changed
+            TransactionHooks.afterCommit(enrolledEvents::evictAll);
+            catalogueCache.evictEvent(eventId);
+        }
+        return new EnrollmentImportResult(imported, skipped, overCapacity);
+    }
+
+    //null capacity means unlimited
+    private record EventSeats(Integer capacity, int enrolledCount) {
+        int left(int added) {
+            return capacity == null ? Integer.MAX_VALUE : capacity - enrolledCount - added;
+        }
+    }
+
+    //the event row stays locked until the transaction ends
+    private EventSeats lockEvent(Long eventId) {
+        try {
+            return jdbcTemplate.queryForObject(
+                    "SELECT capacity, enrolled_count FROM app_event WHERE id = ? FOR UPDATE",
+                    (rs, rowNum) -> new EventSeats(rs.getObject("capacity", Integer.class), rs.getInt("enrolled_count")),
+                    eventId);
+        } catch (EmptyResultDataAccessException e) {
+            throw new EventNotFoundException("Event not found.");
+        }
+    }
+
+    //rows the batch inserted. a driver may answer SUCCESS_NO_INFO instead of a count, then the event's rows are
+    //counted again, rowsBefore being how many there were before the batch
+    private int insertBatch(Long eventId, List<Object[]> batch, int rowsBefore) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        int inserted = 0;
+        for (int count : jdbcTemplate.batchUpdate(IMPORT_SQL, batch)) {
+            if (count == Statement.SUCCESS_NO_INFO) {
+                return countEnrollments(eventId) - rowsBefore;
+            }
+            inserted += count;
+        }
+        return inserted;
+    }
+
+    private int countEnrollments(Long eventId) {
+        Integer count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM enrollment WHERE event_id = ?", Integer.class, eventId);
+        return count == null ? 0 : count;
+    }
+
+    private static String toCsv(EnrollmentResponse row) {
+        return row.getId() + "," + row.getEnrollmentTime() + "," + row.getUserId() + ","
+                + csvField(row.getEmail()) + "," + csvField(row.getUsername()) + "," + row.getEventId();
+    }
+
+    private static String csvField(String value) {
+        if (value == null) {
+            return "";
+        }
+        boolean quote = value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0
+                || value.indexOf('\r') >= 0;
+        //a leading formula character would be evaluated by spreadsheet apps
+        if (!value.isEmpty() && "=+-@".indexOf(value.charAt(0)) >= 0) {
+            value = "'" + value;
+            quote = true;
+        }
+        return quote ? "\"" + value.replace("\"", "\"\"") + "\"" : value;
+    }
+}
@@ -0,0 +1,103 @@
+package com.standingcat.event.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.standingcat.event.dto.EventResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+//Read-through cache for the public catalogue. Holds immutable EventResponse snapshots per event id,
+//plus the ordered list of visible ids, so an enrollment only drops the one event it changed and
+//the listing is rebuilt from whatever snapshots are still cached.
+//Evictions run after commit. get and visibleIds load under the key's lock, which an eviction waits for, so a
+//load that read the pre-commit state is dropped again. getAll loads outside any lock, so it only caches what it
+//read if no event was evicted while it was loading, a racing snapshot is returned once but never kept.
+@Component
+public class EventCatalogueCache {
+    private static final String VISIBLE = "visible";
+
+    private final Cache<Long, EventResponse> events;
+    private final Cache<String, List<Long>> visibleIds;
+    //bumped by every event eviction, under the evicted key's lock
+    private final AtomicLong evictions = new AtomicLong();
+
+    public EventCatalogueCache(@Value("${catalogue.cache.max-size:10000}") long maxSize,
+                               @Value("${catalogue.cache.ttl:60s}") Duration ttl,
+                               MeterRegistry meterRegistry) {
+        this.events = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        this.visibleIds = Caffeine.newBuilder()
+                .maximumSize(1)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, events, "catalogue.events");
+        CaffeineCacheMetrics.monitor(meterRegistry, visibleIds, "catalogue.visible-ids");
+    }
+
+    public List<Long> visibleIds(Supplier<List<Long>> loader) {
+        return visibleIds.get(VISIBLE, key -> List.copyOf(loader.get()));
+    }
+
+    //loader is only called with the ids that are missing, in one go
+    public Map<Long, EventResponse> getAll(Collection<Long> ids,
+                                           Function<Set<? extends Long>, Map<Long, EventResponse>> loader) {
+        Map<Long, EventResponse> found = new HashMap<>(events.getAllPresent(ids));
+        Set<Long> missing = new LinkedHashSet<>(ids);
+        missing.removeAll(found.keySet());
+        if (missing.isEmpty()) {
+            return found;
+        }
+        long evictionsBefore = evictions.get();
+        loader.apply(missing).forEach((id, event) -> {
+            found.put(id, event);
+            //checked under the same lock the eviction takes, so it can't slip in between the check and the put
+            events.asMap().compute(id, (key, current) -> evictions.get() == evictionsBefore ? event : current);
+        });
+        return found;
+    }
+
+    //loader may return null for an unknown id, which is not cached
+    public Optional<EventResponse> get(Long id, Function<Long, EventResponse> loader) {
+        return Optional.ofNullable(events.get(id, loader));
+    }
+
+    //the event's own data or seat count changed
+    public void evictEvent(Long eventId) {
+        TransactionHooks.afterCommit(() -> events.asMap().compute(eventId, (id, current) -> {
+            evictions.incrementAndGet();
+            return null;
+        }));
+    }
+
+    //everything, for rows changed without going through the services (tests rolling back, manual SQL)
+    public void evictAll() {
+        TransactionHooks.afterCommit(() -> {
+            evictions.incrementAndGet();
+            events.invalidateAll();
+            visibleIds.invalidateAll();
+        });
+    }
+
+    //an event was created, deleted, hidden or unhidden
+    public void evictListing() {
+        TransactionHooks.afterCommit(visibleIds::invalidateAll);
+    }
+}
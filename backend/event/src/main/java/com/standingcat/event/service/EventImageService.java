@@ -0,0 +1,203 @@
+package com.standingcat.event.service;
+
+import com.standingcat.event.repository.EventRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Stream;
+
+//Keeps image uploads off the request and its transaction.
+//The request only streams the multipart file into a staging directory and marks the event with the upload id.
+//After commit the staged file is pushed to the ImageStore on the task executor, and the event row is switched
+//to the new image only if it is still waiting for that upload. Anything that loses that race, and staged files
+//left behind by a crash, are deleted rather than left in the store.
+@Service
+public class EventImageService {
+    private static final Logger log = LoggerFactory.getLogger(EventImageService.class);
+
+    private final ImageStore imageStore;
+    private final EventRepository eventRepository;
+    private final EventCatalogueCache catalogueCache;
+    private final TransactionTemplate transactionTemplate;
+    private final TaskExecutor taskExecutor;
+    private final Path stagingDir;
+    private final Duration stagingMaxAge;
+    private final MeterRegistry meterRegistry;
+
+    public EventImageService(ImageStore imageStore,
+                             EventRepository eventRepository,
+                             EventCatalogueCache catalogueCache,
+                             TransactionTemplate transactionTemplate,
+                             @Qualifier("applicationTaskExecutor") TaskExecutor taskExecutor,
+                             @Value("${image.staging.dir:image-staging}") Path stagingDir,
+                             @Value("${image.staging.max-age:1h}") Duration stagingMaxAge,
+                             MeterRegistry meterRegistry) throws IOException {
+        this.imageStore = imageStore;
+        this.eventRepository = eventRepository;
+        this.catalogueCache = catalogueCache;
+        this.transactionTemplate = transactionTemplate;
+        this.taskExecutor = taskExecutor;
+        this.stagingDir = Files.createDirectories(stagingDir.toAbsolutePath().normalize());
+        this.stagingMaxAge = stagingMaxAge;
+        this.meterRegistry = meterRegistry;
+    }
+
+    //Streams the upload to disk and returns its upload id. Call inside the transaction that saves the event,
+    //the staged file is removed again if that transaction rolls back.
+    public String stage(MultipartFile image) {
+        String uploadId = UUID.randomUUID().toString();
+        Path staged = stagingDir.resolve(uploadId);
+        try {
+            image.transferTo(staged);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to save image", e);
+        }
+        TransactionHooks.afterRollback(() -> deleteStaged(staged));
+        return uploadId;
+    }
+
+    //once the event with pendingImageId = uploadId has committed, push the staged file to the store
+    public void uploadAfterCommit(Long eventId, String uploadId, String folder, String originalFilename) {
+        String filename = safeFilename(originalFilename);
+        TransactionHooks.afterCommit(() -> {
+            try {
+                taskExecutor.execute(() -> upload(eventId, uploadId, folder, filename));
+            } catch (RejectedExecutionException e) {
+                //otherwise the event waits for this upload forever and the staged file is only found by the cleanup
+                log.warn("No room to upload image {} for event {}, dropping it", uploadId, eventId);
+                abandon(eventId, uploadId);
+            }
+        });
+    }
+
+    //removes an image that is no longer referenced, e.g. of a deleted event
+    public void deleteAfterCommit(String publicId) {
+        if (publicId == null || publicId.isBlank()) {
+            return;
+        }
+        TransactionHooks.afterCommit(() -> {
+            try {
+                taskExecutor.execute(() -> deleteStored(publicId));
+            } catch (RejectedExecutionException e) {
+                log.warn("No room to delete stored image {}, it is left in the store", publicId);
+            }
+        });
+    }
+
+    void upload(Long eventId, String uploadId, String folder, String filename) {
+        Path staged = stagingDir.resolve(uploadId);
+        try {
+            StoredImage stored = timed("store", () -> imageStore.store(staged, folder, filename));
+            Optional<String> replaced = transactionTemplate.execute(status -> {
+                Optional<String> previous = eventRepository.findImagePublicId(eventId);
+                int updated = eventRepository.completeImageUpload(eventId, uploadId, stored.getUrl(), stored.getPublicId());
+                return updated == 1 ? Optional.of(previous.orElse("")) : null;
+            });
+            if (replaced == null) {
+                //event deleted or given another image while this one was uploading
+                deleteStored(stored.getPublicId());
+            } else {
+                catalogueCache.evictEvent(eventId);
+                replaced.filter(id -> !id.isBlank()).ifPresent(this::deleteStored);
+            }
+        } catch (Exception e) {
+            log.error("Image upload {} for event {} failed", uploadId, eventId, e);
+            abandon(eventId, uploadId);
+        } finally {
+            deleteStaged(staged);
+        }
+    }
+
+    //the event keeps its current image
+    private void abandon(Long eventId, String uploadId) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> eventRepository.abandonImageUpload(eventId, uploadId));
+        } finally {
+            deleteStaged(stagingDir.resolve(uploadId));
+        }
+    }
+
+    //staged files only outlive their upload if the process died in between
+    @Scheduled(fixedDelayString = "${image.staging.cleanup-interval:15m}")
+    public void cleanUpStaging() {
+        FileTime cutoff = FileTime.from(Instant.now().minus(stagingMaxAge));
+        try (Stream<Path> files = Files.list(stagingDir)) {
+            files.filter(file -> isOlderThan(file, cutoff)).forEach(this::deleteStaged);
+        } catch (IOException e) {
+            log.warn("Could not list staging directory {}", stagingDir, e);
+        }
+    }
+
+    private static boolean isOlderThan(Path file, FileTime cutoff) {
+        try {
+            return Files.getLastModifiedTime(file).compareTo(cutoff) < 0;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private void deleteStored(String publicId) {
+        try {
+            timed("delete", () -> {
+                imageStore.delete(publicId);
+                return null;
+            });
+        } catch (Exception e) {
+            log.warn("Failed to delete stored image {}", publicId, e);
+        }
+    }
+
+    //latency of calls to the image store (Cloudinary or local disk), failures included
+    private <T> T timed(String operation, Callable<T> call) throws Exception {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        try {
+            T result = call.call();
+            outcome = "success";
+            return result;
+        } finally {
+            sample.stop(Timer.builder("image.store.calls")
+                    .description("Time spent in image store calls")
+                    .tags("operation", operation,
+                            "store", imageStore.getClass().getSimpleName(),
+                            "outcome", outcome)
+                    .register(meterRegistry));
+        }
+    }
+
+    private void deleteStaged(Path staged) {
+        try {
+            Files.deleteIfExists(staged);
+        } catch (IOException e) {
+            log.warn("Failed to delete staged image {}", staged, e);
+        }
+    }
+
+    private static String safeFilename(String originalFilename) {
+        if (originalFilename == null) {
+            return "image";
+        }
+        String name = originalFilename.substring(Math.max(originalFilename.lastIndexOf('/'), originalFilename.lastIndexOf('\\')) + 1);
+        String cleaned = name.replaceAll("[^A-Za-z0-9._-]", "_").replaceAll("^\\.+", "");
+        return cleaned.isEmpty() ? "image" : cleaned;
+    }
+}
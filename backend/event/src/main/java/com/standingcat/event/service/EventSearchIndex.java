@@ -0,0 +1,242 @@
+package com.standingcat.event.service;
+
+import com.standingcat.event.model.Event;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+//In-memory inverted index over the title, description and markdown of visible events, for search-as-you-type.
+//Terms are kept sorted so a prefix is one range of the map. Every query term has to match (as a word or a word
+//prefix of at least MIN_PREFIX characters); matches are ranked by field weight and rarity of the term.
+//Filled from the database on startup and kept current by EventService after each commit.
+@Component
+public class EventSearchIndex {
+    private static final Logger log = LoggerFactory.getLogger(EventSearchIndex.class);
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final int TITLE_WEIGHT = 4;
+    private static final int TEXT_WEIGHT = 1;
+    private static final int MIN_PREFIX = 2;
+    //a short prefix like "co" can expand to thousands of words, the first ones are enough to rank with
+    private static final int MAX_EXPANSIONS = 256;
+    private static final double PREFIX_PENALTY = 0.5;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    //term -> event id -> weight of the term in that event
+    private final NavigableMap<String, Map<Long, Integer>> postings = new TreeMap<>();
+    //event id -> its terms, to take an event out again
+    private final Map<Long, Set<String>> termsByEvent = new HashMap<>();
+
+    public EventSearchIndex(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long start = System.nanoTime();
+        //the write lock is held for the whole read, so an update committed meanwhile waits and is applied on top
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            termsByEvent.clear();
+            jdbcTemplate.query(
+                    "SELECT id, title, description, description_markdown FROM app_event WHERE is_hidden = FALSE",
+                    rs -> {
+                        addLocked(rs.getLong("id"), terms(rs.getString("title"),
+                                rs.getString("description"), rs.getString("description_markdown")));
+                    });
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Search index built: {} events, {} terms in {} ms",
+                termsByEvent.size(), postings.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    //adds or replaces the event, or takes it out if it is hidden. call after commit
+    public void index(Event event) {
+        if (event.isHidden()) {
+            remove(event.getId());
+            return;
+        }
+        Map<String, Integer> terms = terms(event.getTitle(), event.getDescription(), event.getDescriptionMarkdown());
+        lock.writeLock().lock();
+        try {
+            removeLocked(event.getId());
+            addLocked(event.getId(), terms);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long eventId) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(eventId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    //ids of the best matching events, best first
+    public List<Long> search(String query, int limit) {
+        Set<String> queryTerms = new LinkedHashSet<>(tokenize(query));
+        if (queryTerms.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        Map<Long, Double> scores = null;
+        lock.readLock().lock();
+        try {
+            int eventCount = termsByEvent.size();
+            List<TermMatch> matches = new ArrayList<>();
+            for (String term : queryTerms) {
+                TermMatch match = new TermMatch(term, expand(term));
+                if (match.expansions().isEmpty()) {
+                    return List.of(); //one term matching nothing rules out every event
+                }
+                matches.add(match);
+            }
+            //rarest term first, so the candidate set starts small and later terms only filter it
+            matches.sort(Comparator.comparingInt(TermMatch::postingCount));
+
+            for (TermMatch match : matches) {
+                Map<Long, Double> previous = scores;
+                Map<Long, Double> termScores = new HashMap<>();
+                for (Map.Entry<String, Map<Long, Integer>> expansion : match.expansions()) {
+                    double idf = Math.log(1 + (double) eventCount / expansion.getValue().size());
+                    double factor = expansion.getKey().equals(match.term()) ? 1.0 : PREFIX_PENALTY;
+                    expansion.getValue().forEach((eventId, weight) -> {
+                        if (previous == null || previous.containsKey(eventId)) {
+                            termScores.merge(eventId, Math.log1p(weight) * idf * factor, Math::max);
+                        }
+                    });
+                }
+                if (previous != null) {
+                    termScores.replaceAll((eventId, score) -> score + previous.get(eventId));
+                }
+                scores = termScores;
+                if (scores.isEmpty()) {
+                    return List.of();
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        return top(scores, limit);
+    }
+
+    //a heap of the best limit entries instead of sorting every match, a one-word query can match most events
+    private static List<Long> top(Map<Long, Double> scores, int limit) {
+        Comparator<Map.Entry<Long, Double>> worstFirst = Map.Entry.comparingByValue();
+        worstFirst = worstFirst.thenComparing(Map.Entry::getKey, Comparator.reverseOrder());
+        PriorityQueue<Map.Entry<Long, Double>> best = new PriorityQueue<>(worstFirst);
+        for (Map.Entry<Long, Double> entry : scores.entrySet()) {
+            best.add(entry);
+            if (best.size() > limit) {
+                best.poll();
+            }
+        }
+        List<Long> ids = new ArrayList<>(best.size());
+        while (!best.isEmpty()) {
+            ids.add(best.poll().getKey());
+        }
+        Collections.reverse(ids);
+        return ids;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return termsByEvent.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //a query term and the indexed words it matches, the word itself first if it is indexed
+    private record TermMatch(String term, List<Map.Entry<String, Map<Long, Integer>>> expansions) {
+        int postingCount() {
+            return expansions.stream().mapToInt(expansion -> expansion.getValue().size()).sum();
+        }
+    }
+
+    private List<Map.Entry<String, Map<Long, Integer>>> expand(String term) {
+        if (term.length() < MIN_PREFIX) {
+            Map<Long, Integer> exact = postings.get(term);
+            return exact != null ? List.of(Map.entry(term, exact)) : List.of();
+        }
+        List<Map.Entry<String, Map<Long, Integer>>> expansions = new ArrayList<>();
+        for (Map.Entry<String, Map<Long, Integer>> entry
+                : postings.subMap(term, true, term + Character.MAX_VALUE, false).entrySet()) {
+            expansions.add(entry);
+            if (expansions.size() == MAX_EXPANSIONS) {
+                break;
+            }
+        }
+        return expansions;
+    }
+
+    private void addLocked(Long eventId, Map<String, Integer> terms) {
+        terms.forEach((term, weight) -> postings.computeIfAbsent(term, key -> new HashMap<>()).put(eventId, weight));
+        termsByEvent.put(eventId, terms.keySet());
+    }
+
+    private void removeLocked(Long eventId) {
+        Set<String> terms = termsByEvent.remove(eventId);
+        if (terms == null) {
+            return;
+        }
+        for (String term : terms) {
+            Map<Long, Integer> events = postings.get(term);
+            events.remove(eventId);
+            if (events.isEmpty()) {
+                postings.remove(term);
+            }
+        }
+    }
+
+    //term -> weight in one event, a title word counts more than one in the description
+    private static Map<String, Integer> terms(String title, String description, String descriptionMarkdown) {
+        Map<String, Integer> terms = new HashMap<>();
+        tokenize(title).forEach(term -> terms.merge(term, TITLE_WEIGHT, Integer::sum));
+        tokenize(description).forEach(term -> terms.merge(term, TEXT_WEIGHT, Integer::sum));
+        tokenize(descriptionMarkdown).forEach(term -> terms.merge(term, TEXT_WEIGHT, Integer::sum));
+        return terms;
+    }
+
+    //lower case words without accents, so "Café" is found by "cafe". markdown syntax falls away with the punctuation
+    static List<String> tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        String folded = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("").toLowerCase(Locale.ROOT);
+        List<String> tokens = new ArrayList<>();
+        for (String token : NON_WORD.split(folded)) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+}
@@ -1,44 +1,138 @@
 package com.standingcat.event.service;
 
-import com.cloudinary.Cloudinary;
-import com.standingcat.event.exception.CloudinaryNoReturnException;
+import com.standingcat.event.dto.EventCursor;
+import com.standingcat.event.dto.EventPageResponse;
+import com.standingcat.event.dto.EventResponse;
+import com.standingcat.event.dto.RenderedDescription;
 import com.standingcat.event.exception.EventNotFoundException;
 import com.standingcat.event.exception.NoRolePermissionException;
 import com.standingcat.event.exception.UserNotFoundException;
 import com.standingcat.event.model.Event;
 import com.standingcat.event.model.User;
 import com.standingcat.event.repository.EventRepository;
-import jakarta.annotation.Resource;
 import jakarta.persistence.Table;
 import jakarta.transaction.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
-import java.util.UUID;
+import java.util.stream.Collectors;
 
 @Service
 public class EventService {
+    public static final int MAX_PAGE_SIZE = 100;
+    //open upper end of the date range, kept inside what both H2 and Postgres store without surprises.
+    //an open lower end is a null bound, any date can be stored and there is nothing below it to pick
+    private static final LocalDateTime LATEST = LocalDateTime.of(9999, 12, 31, 23, 59);
+
     @Autowired
     private EventRepository eventRepository;
 
     @Autowired
     private UserService userService;
 
-    @Resource
-    private Cloudinary cloudinary;
+    @Autowired
+    private EventImageService eventImageService;
+
+    @Autowired
+    private WaitlistService waitlistService;
+
+    @Autowired
+    private SeatCounter seatCounter;
+
+    @Autowired
+    private EventCatalogueCache catalogueCache;
+
+    @Autowired
+    private SeatAvailabilityBroadcaster seatAvailability;
+
+    @Autowired
+    private EventSearchIndex searchIndex;
+
+    @Autowired
+    private MarkdownRenderer markdownRenderer;
+
+    @Autowired
+    private EnrolledEventsCache enrolledEvents;
+
+    //served from the catalogue cache, only ids or snapshots that aren't cached are read from the database
+    public List<EventResponse> getAllEvents() {
+        List<Long> ids = catalogueCache.visibleIds(eventRepository::findVisibleIds);
+        Map<Long, EventResponse> byId = catalogueCache.getAll(ids, missing ->
+                eventRepository.findAllById(List.copyOf(missing)).stream()
+                        .collect(Collectors.toMap(Event::getId, EventResponse::new)));
+        return ids.stream()
+                .map(byId::get)
+                .filter(Objects::nonNull) //deleted between the two lookups
+                .toList();
+    }
+
+    //best matches first, the snapshots come from the catalogue cache like the listing
+    public List<EventResponse> searchEvents(String query, int limit) {
+        List<Long> ids = searchIndex.search(query, Math.max(1, Math.min(limit, MAX_PAGE_SIZE)));
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, EventResponse> byId = catalogueCache.getAll(ids, missing ->
+                eventRepository.findAllById(List.copyOf(missing)).stream()
+                        .collect(Collectors.toMap(Event::getId, EventResponse::new)));
+        return ids.stream()
+                .map(byId::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    //empty for an unknown event. rows saved before the HTML was stored are rendered here (cached by content hash)
+    public Optional<RenderedDescription> getDescriptionHtml(Long eventId) {
+        return eventRepository.findDescription(eventId).stream().findFirst().map(row -> row[1] != null
+                ? new RenderedDescription((String) row[0], (String) row[1])
+                : new RenderedDescription(MarkdownRenderer.hash((String) row[2]), markdownRenderer.render((String) row[2])));
+    }
+
+    public Optional<EventResponse> getEventResponseById(Long id) {
+        return catalogueCache.get(id, key -> eventRepository.findById(key).map(EventResponse::new).orElse(null));
+    }
+
+    //first page when cursor is null. from is inclusive and to exclusive, both optional
+    public EventPageResponse getVisibleEventsPage(String cursor,
+                                                  int limit,
+                                                  LocalDateTime from,
+                                                  LocalDateTime to,
+                                                  Long ownerId,
+                                                  boolean onlyWithFreeSeats) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        EventCursor after = new EventCursor(from, 0L);
+        if (cursor != null && !cursor.isBlank()) {
+            EventCursor decoded = EventCursor.decode(cursor);
+            //a cursor from before the lower bound would scan rows the filter throws away anyway
+            if (from == null || !decoded.getEventTime().isBefore(from)) {
+                after = decoded;
+            }
+        }
+
+        //one extra row tells us whether there is a next page without a count query
+        List<Event> rows = eventRepository.findVisiblePage(
+                after.getEventTime(),
+                after.getId(),
+                to != null ? to : LATEST,
+                ownerId,
+                onlyWithFreeSeats,
+                Limit.of(pageSize + 1));
 
-    public List<Event> getAllEvents() {
-        return eventRepository.findByIsHiddenFalse();
+        boolean hasMore = rows.size() > pageSize;
+        List<Event> page = hasMore ? rows.subList(0, pageSize) : rows;
+        String nextCursor = null;
+        if (hasMore) {
+            Event last = page.get(page.size() - 1);
+            nextCursor = new EventCursor(last.getEventTime(), last.getId()).encode();
+        }
+        return new EventPageResponse(page.stream().map(EventResponse::new).toList(), nextCursor);
     }
 
     public Optional<Event> getEventById(Long id) {
@@ -62,54 +156,23 @@ public class EventService {
         Event event = new Event();
         event.setTitle(title);
         event.setDescription(description);
-        event.setDescriptionMarkdown(descriptionMarkdown);
+        setDescriptionMarkdown(event, descriptionMarkdown);
         event.setEventTime(eventTime);
         event.setCapacity(capacity);
         event.setOwner(adminUser);
+        catalogueCache.evictListing();
 
-        String uploadedPublicId = null;
-
+        String uploadId = null;
         if (image != null && !image.isEmpty()) {
-            try {
-                String uploadFolder = "user_uploads/" + adminUser.getId();
-                Map<String, Object> options = Map.of(
-                        "folder", uploadFolder,
-                        "use_filename", true,
-                        "unique_filename", true
-                );
-                Map<?, ?> uploadResult = cloudinary.uploader().upload(
-                  image.getBytes(),
-                  options
-                );
-                uploadedPublicId = (String) uploadResult.get("public_id");
-                String imageUrl = (String) uploadResult.get("secure_url");
-                if(imageUrl == null) {
-                    throw new CloudinaryNoReturnException("Cloudinary did not return URL of uploaded image.");
-                }
-                event.setImageUrl(imageUrl);
-                event.setImagePublicId(uploadedPublicId);
-                Event saved = eventRepository.save(event);
-                System.out.println(">>> [Service] Event saved with ID: " + saved.getId());
-                return saved;
-            } catch (IOException e) {
-                System.out.println(">>> [Service] Failed to save image: " + e.getMessage());
-                if(uploadedPublicId != null) {
-                    try{
-                        cloudinary.uploader().destroy(uploadedPublicId, Map.of());//
-                    } catch (Exception err) {
-                        //log could be appropriate here
-                        System.err.println("Failed to clean cloudinary upload: " + err.getMessage());
-                    }
-                }
-                //change with better runtime exception
-                throw new RuntimeException("Failed to save image", e);
-            }
-        }
-        else {
-            System.out.println(">>> [Service] No image provided, skipping upload.");
+            //only staged here, the upload runs after commit and fills in imageUrl when it's done
+            uploadId = eventImageService.stage(image);
+            event.setPendingImageId(uploadId);
         }
         Event saved = eventRepository.save(event);
-        System.out.println(">>> [Service] Event saved with ID: " + saved.getId());
+        TransactionHooks.afterCommit(() -> searchIndex.index(saved));
+        if (uploadId != null) {
+            eventImageService.uploadAfterCommit(saved.getId(), uploadId, uploadFolder(adminUser), image.getOriginalFilename());
+        }
         return saved;
     }
 
@@ -117,6 +180,15 @@ public class EventService {
     public void deleteEvent(Long eventId) {
         Event event = eventRepository.findById(eventId).orElseThrow(() -> new EventNotFoundException("Event not found."));
         eventRepository.delete(event);
+        eventImageService.deleteAfterCommit(event.getImagePublicId());
+        waitlistService.forgetEvent(eventId);
+        TransactionHooks.afterCommit(() -> seatCounter.evict(eventId));
+        TransactionHooks.afterCommit(() -> seatAvailability.seatsChanged(eventId));
+        TransactionHooks.afterCommit(() -> searchIndex.remove(eventId));
+        //the enrollments went with the event (cascade), without saying whose
+        TransactionHooks.afterCommit(enrolledEvents::evictAll);
+        catalogueCache.evictEvent(eventId);
+        catalogueCache.evictListing();
     }
 
     @Transactional
@@ -125,14 +197,20 @@ public class EventService {
         Event event = eventRepository.findById(eventId).orElseThrow(() -> new EventNotFoundException("Event not found."));
         event.setEventTime(updatedEvent.getEventTime());
         event.setDescription(updatedEvent.getDescription());
-        event.setDescriptionMarkdown(updatedEvent.getDescriptionMarkdown());
+        setDescriptionMarkdown(event, updatedEvent.getDescriptionMarkdown());
         event.setImageUrl(updatedEvent.getImageUrl());
+        Integer previousCapacity = event.getCapacity();
         event.setCapacity(updatedEvent.getCapacity());
         event.setTitle(updatedEvent.getTitle());
-        return eventRepository.save(event);
+        TransactionHooks.afterCommit(() -> seatCounter.evict(eventId));
+        TransactionHooks.afterCommit(() -> seatAvailability.seatsChanged(eventId));
+        catalogueCache.evictEvent(eventId);
+        Event saved = eventRepository.save(event);
+        TransactionHooks.afterCommit(() -> searchIndex.index(saved));
+        promoteIfCapacityGrew(eventId, previousCapacity, saved.getCapacity());
+        return saved;
     }
 
-    //to do: image upload
     @Transactional
     public Event updateEvent(Long eventId,
                                      String title,
@@ -149,68 +227,55 @@ public class EventService {
         }
         event.setEventTime(eventTime);
         event.setDescription(description);
-        event.setDescriptionMarkdown(descriptionMarkdown);
+        setDescriptionMarkdown(event, descriptionMarkdown);
+        Integer previousCapacity = event.getCapacity();
         event.setCapacity(capacity);
         event.setTitle(title);
-        //return eventRepository.save(event);
-        String previousPublicId = event.getImagePublicId();
-        String newPublicId = null;
-
-        try {
-            if (image != null && !image.isEmpty()) {
-                String userFolder = "user_uploads/" + adminUser.getId();
-
-                Map<String, Object> uploadOptions = Map.of(
-                        "folder", userFolder,
-                        "use_filename", true,
-                        "unique_filename", true
-                );
-
-                Map<?, ?> uploadResult = cloudinary.uploader().upload(image.getBytes(), uploadOptions);
-                String imageUrl = (String) uploadResult.get("secure_url");
-                newPublicId = (String) uploadResult.get("public_id");
-
-                if (imageUrl == null) {
-                    throw new RuntimeException("Cloudinary upload did not return a URL.");
-                }
-
-                event.setImageUrl(imageUrl);
-                event.setImagePublicId(newPublicId);
-            }
-
-            Event updatedEvent = eventRepository.save(event);
+        if (image != null && !image.isEmpty()) {
+            //the current image stays until the new one is uploaded, EventImageService removes the old one then
+            String uploadId = eventImageService.stage(image);
+            event.setPendingImageId(uploadId);
+            eventImageService.uploadAfterCommit(eventId, uploadId, uploadFolder(adminUser), image.getOriginalFilename());
+        }
+        Event updatedEvent = eventRepository.save(event);
+        TransactionHooks.afterCommit(() -> seatCounter.evict(eventId));
+        TransactionHooks.afterCommit(() -> searchIndex.index(updatedEvent));
+        TransactionHooks.afterCommit(() -> seatAvailability.seatsChanged(eventId));
+        catalogueCache.evictEvent(eventId);
+        promoteIfCapacityGrew(eventId, previousCapacity, capacity);
+        return updatedEvent;
+    }
 
-            if (newPublicId != null && previousPublicId != null && !previousPublicId.isBlank()) {
-                try {
-                    cloudinary.uploader().destroy(previousPublicId, Map.of());
-                } catch (Exception cleanupError) {
-                    System.err.println("WARN: Failed to delete old Cloudinary image for event: "
-                            + cleanupError.getMessage());
-                }
-            }
+    //rendered once per change of the markdown here, instead of by every client that shows the event
+    private void setDescriptionMarkdown(Event event, String descriptionMarkdown) {
+        String hash = MarkdownRenderer.hash(descriptionMarkdown);
+        if (!Objects.equals(hash, event.getDescriptionHash())) {
+            event.setDescriptionHtml(markdownRenderer.render(descriptionMarkdown));
+            event.setDescriptionHash(hash);
+        }
+        event.setDescriptionMarkdown(descriptionMarkdown);
+    }
 
-            return updatedEvent;
-
-        } catch (Exception e) {
-            //upload success but failure occurs after, need to clean up upload
-            if (newPublicId != null) {
-                try {
-                    cloudinary.uploader().destroy(newPublicId, Map.of());
-                } catch (Exception cleanupError) {
-                    System.err.println("WARNING: Failed to clean up new Cloudinary image after update failure: "
-                            + cleanupError.getMessage());
-                }
-            }
-            //change to better error
-            throw new RuntimeException("Event update failed: " + e.getMessage(), e);
+    //new seats go to the waitlist first. null capacity is unlimited
+    private void promoteIfCapacityGrew(Long eventId, Integer previousCapacity, Integer capacity) {
+        boolean grew = previousCapacity != null && (capacity == null || capacity > previousCapacity);
+        if (grew) {
+            waitlistService.promote(eventId);
         }
     }
 
+    private static String uploadFolder(User adminUser) {
+        return "user_uploads/" + adminUser.getId();
+    }
+
     @Transactional
     public Event hideEvent(Long eventId) {
         Event event = eventRepository.findById(eventId)
                 .orElseThrow(() -> new EventNotFoundException("Event not found."));
         event.setHidden(true);
+        TransactionHooks.afterCommit(() -> searchIndex.remove(eventId));
+        catalogueCache.evictEvent(eventId);
+        catalogueCache.evictListing();
         return eventRepository.save(event);
     }
 
@@ -219,6 +284,10 @@ public class EventService {
         Event event = eventRepository.findById(eventId)
                 .orElseThrow(() -> new EventNotFoundException("Event not found."));
         event.setHidden(false);
-        return eventRepository.save(event);
+        catalogueCache.evictEvent(eventId);
+        catalogueCache.evictListing();
+        Event saved = eventRepository.save(event);
+        TransactionHooks.afterCommit(() -> searchIndex.index(saved));
+        return saved;
     }
 }
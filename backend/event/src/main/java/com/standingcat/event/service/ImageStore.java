@@ -0,0 +1,13 @@
+package com.standingcat.event.service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+//Where event images end up. Selected with image.store: cloudinary (default) or local, which keeps files
+//under uploads/ and serves them as static resources so the app works without Cloudinary credentials.
+public interface ImageStore {
+    //reads the file from disk, never the whole image into memory
+    StoredImage store(Path file, String folder, String filename) throws IOException;
+
+    void delete(String publicId) throws IOException;
+}
@@ -0,0 +1,48 @@
+package com.standingcat.event.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.UUID;
+
+//Offline stand-in for Cloudinary. Files go under uploads/images, which spring.web.resources.static-locations
+//already serves, so the returned url works as-is.
+@Component
+@ConditionalOnProperty(name = "image.store", havingValue = "local")
+public class LocalImageStore implements ImageStore {
+    private final Path root;
+    private final String urlPrefix;
+
+    public LocalImageStore(@Value("${image.store.local.dir:uploads/images}") Path root,
+                           @Value("${image.store.local.url-prefix:/images/}") String urlPrefix) {
+        this.root = root.toAbsolutePath().normalize();
+        this.urlPrefix = urlPrefix;
+    }
+
+    @Override
+    public StoredImage store(Path file, String folder, String filename) throws IOException {
+        String publicId = folder + "/" + UUID.randomUUID() + "_" + filename;
+        Path target = resolve(publicId);
+        Files.createDirectories(target.getParent());
+        Files.copy(file, target, StandardCopyOption.REPLACE_EXISTING);
+        return new StoredImage(urlPrefix + publicId, publicId);
+    }
+
+    @Override
+    public void delete(String publicId) throws IOException {
+        Files.deleteIfExists(resolve(publicId));
+    }
+
+    private Path resolve(String publicId) {
+        Path path = root.resolve(publicId).normalize();
+        if (!path.startsWith(root)) {
+            throw new IllegalArgumentException("Invalid image id.");
+        }
+        return path;
+    }
+}
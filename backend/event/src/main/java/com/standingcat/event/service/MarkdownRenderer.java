@@ -0,0 +1,72 @@
+package com.standingcat.event.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.commonmark.Extension;
+import org.commonmark.ext.gfm.strikethrough.StrikethroughExtension;
+import org.commonmark.ext.gfm.tables.TablesExtension;
+import org.commonmark.node.Link;
+import org.commonmark.parser.Parser;
+import org.commonmark.renderer.html.HtmlRenderer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+
+//Renders event descriptions from markdown to HTML that is safe to put into a page as is: raw HTML in the markdown
+//is escaped, javascript:/data: links are dropped and links open without a referrer. Tables and strikethrough
+//are supported like in the editor. Results are cached by the SHA-256 of the markdown, so the same text is rendered once.
+@Component
+public class MarkdownRenderer {
+    private static final List<Extension> EXTENSIONS = List.of(TablesExtension.create(), StrikethroughExtension.create());
+
+    //both are immutable and thread safe once built
+    private final Parser parser = Parser.builder().extensions(EXTENSIONS).build();
+    private final HtmlRenderer renderer = HtmlRenderer.builder()
+            .extensions(EXTENSIONS)
+            .escapeHtml(true)
+            .sanitizeUrls(true)
+            .attributeProviderFactory(context -> (node, tagName, attributes) -> {
+                if (node instanceof Link) {
+                    attributes.put("rel", "nofollow noopener noreferrer");
+                }
+            })
+            .build();
+    private final Cache<String, String> rendered;
+
+    public MarkdownRenderer(@Value("${markdown.render-cache.max-size:1000}") long maxSize,
+                            MeterRegistry meterRegistry) {
+        this.rendered = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, rendered, "markdown.rendered");
+    }
+
+    //null for null or blank markdown
+    public String render(String markdown) {
+        if (markdown == null || markdown.isBlank()) {
+            return null;
+        }
+        return rendered.get(hash(markdown), key -> renderer.render(parser.parse(markdown)));
+    }
+
+    //hex SHA-256 of the markdown, null for null or blank markdown
+    public static String hash(String markdown) {
+        if (markdown == null || markdown.isBlank()) {
+            return null;
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(markdown.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
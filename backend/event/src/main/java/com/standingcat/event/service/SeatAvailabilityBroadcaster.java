@@ -0,0 +1,223 @@
+package com.standingcat.event.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.standingcat.event.dto.SeatAvailability;
+import com.standingcat.event.repository.EventRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+//Pushes live seat counts to SSE subscribers of an event. Seat changes only mark the event after commit;
+//once per interval the marked events are read in one query and each new count is serialized once and
+//handed to every subscriber, so a rush of enrollments costs each client at most one message per interval.
+//An open stream holds a connection but no thread. Sends run on virtual threads, one drain per subscriber
+//at a time, and a slow client only ever has the latest message waiting, never a backlog.
+@Component
+public class SeatAvailabilityBroadcaster {
+    private static final Logger log = LoggerFactory.getLogger(SeatAvailabilityBroadcaster.class);
+    private static final Set<ResponseBodyEmitter.DataWithMediaType> HEARTBEAT = SseEmitter.event().comment("").build();
+
+    private final EventRepository eventRepository;
+    private final ObjectMapper objectMapper;
+    private final Duration interval;
+    private final Duration heartbeat;
+    private final Duration streamTimeout;
+
+    private final Map<Long, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final Set<Long> changed = ConcurrentHashMap.newKeySet();
+    private final ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor();
+    private ScheduledExecutorService ticker;
+
+    public SeatAvailabilityBroadcaster(EventRepository eventRepository,
+                                       ObjectMapper objectMapper,
+                                       @Value("${availability.stream.interval:500ms}") Duration interval,
+                                       @Value("${availability.stream.heartbeat:25s}") Duration heartbeat,
+                                       @Value("${availability.stream.timeout:30m}") Duration streamTimeout,
+                                       MeterRegistry meterRegistry) {
+        this.eventRepository = eventRepository;
+        this.objectMapper = objectMapper;
+        this.interval = interval;
+        this.heartbeat = heartbeat;
+        this.streamTimeout = streamTimeout;
+        Gauge.builder("availability.stream.subscribers", subscribers,
+                        map -> map.values().stream().mapToInt(Set::size).sum())
+                .description("Open seat availability streams")
+                .register(meterRegistry);
+    }
+
+    //its own thread so a slow @Scheduled job (e.g. an SMTP batch) can't hold up the updates
+    @PostConstruct
+    void start() {
+        ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "seat-availability");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(this::flushQuietly, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+        ticker.scheduleAtFixedRate(this::heartbeat, heartbeat.toMillis(), heartbeat.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        ticker.shutdownNow();
+        subscribers.values().forEach(listeners -> listeners.forEach(subscriber -> subscriber.emitter.complete()));
+        senders.shutdownNow();
+    }
+
+    //opens a stream that starts with the given snapshot
+    public SseEmitter subscribe(SeatAvailability current) {
+        Long eventId = current.getEventId();
+        SseEmitter emitter = new SseEmitter(streamTimeout.toMillis());
+        Subscriber subscriber = new Subscriber(eventId, emitter);
+        //compute, not computeIfAbsent + add, so this can't land in a set unsubscribe is just dropping
+        subscribers.compute(eventId, (id, listeners) -> {
+            Set<Subscriber> updated = listeners != null ? listeners : ConcurrentHashMap.newKeySet();
+            updated.add(subscriber);
+            return updated;
+        });
+        emitter.onCompletion(() -> unsubscribe(eventId, subscriber));
+        emitter.onTimeout(() -> unsubscribe(eventId, subscriber));
+        emitter.onError(error -> unsubscribe(eventId, subscriber));
+        subscriber.offer(message(current));
+        return emitter;
+    }
+
+    //the event's seat count or capacity may have changed, or it was deleted. call after commit
+    public void seatsChanged(Long eventId) {
+        if (subscribers.containsKey(eventId)) {
+            changed.add(eventId);
+        }
+    }
+
+    private void unsubscribe(Long eventId, Subscriber subscriber) {
+        subscribers.computeIfPresent(eventId, (id, listeners) -> {
+            listeners.remove(subscriber);
+            return listeners.isEmpty() ? null : listeners;
+        });
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            //an exception would cancel the schedule, the marks of this round are lost but the next ones go out
+            log.warn("Seat availability update failed", e);
+        }
+    }
+
+    void flush() {
+        if (changed.isEmpty()) {
+            return;
+        }
+        //unmarked before reading, so a change committed meanwhile is either in this read or marks the event again
+        List<Long> eventIds = new ArrayList<>(changed);
+        eventIds.forEach(changed::remove);
+
+        Set<Long> gone = new HashSet<>(eventIds);
+        for (Object[] row : eventRepository.findSeatCounts(eventIds)) {
+            Long eventId = (Long) row[0];
+            gone.remove(eventId);
+            Set<Subscriber> listeners = subscribers.get(eventId);
+            if (listeners != null) {
+                var message = message(new SeatAvailability(eventId, (Integer) row[2], ((Number) row[1]).intValue()));
+                listeners.forEach(subscriber -> subscriber.offer(message));
+            }
+        }
+        //deleted events end their streams
+        for (Long eventId : gone) {
+            Set<Subscriber> listeners = subscribers.remove(eventId);
+            if (listeners != null) {
+                listeners.forEach(subscriber -> subscriber.emitter.complete());
+            }
+        }
+    }
+
+    //a comment line now and then keeps proxies from closing idle streams and finds clients that went away
+    private void heartbeat() {
+        subscribers.values().forEach(listeners -> listeners.forEach(Subscriber::offerHeartbeat));
+    }
+
+    private Set<ResponseBodyEmitter.DataWithMediaType> message(SeatAvailability availability) {
+        try {
+            return SseEmitter.event()
+                    .name("availability")
+                    .data(objectMapper.writeValueAsString(availability))
+                    .build();
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private final class Subscriber {
+        private final Long eventId;
+        private final SseEmitter emitter;
+        //latest message not yet sent, replaced rather than queued when the client is slow
+        private final AtomicReference<Set<ResponseBodyEmitter.DataWithMediaType>> pending = new AtomicReference<>();
+        private final AtomicBoolean sending = new AtomicBoolean();
+
+        private Subscriber(Long eventId, SseEmitter emitter) {
+            this.eventId = eventId;
+            this.emitter = emitter;
+        }
+
+        void offer(Set<ResponseBodyEmitter.DataWithMediaType> message) {
+            pending.set(message);
+            startDrain();
+        }
+
+        void offerHeartbeat() {
+            if (pending.compareAndSet(null, HEARTBEAT)) {
+                startDrain();
+            }
+        }
+
+        private void startDrain() {
+            if (sending.compareAndSet(false, true)) {
+                senders.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            try {
+                Set<ResponseBodyEmitter.DataWithMediaType> next;
+                while ((next = pending.getAndSet(null)) != null) {
+                    emitter.send(next);
+                }
+            } catch (IOException | IllegalStateException e) {
+                //client gone or stream already completed
+                unsubscribe(eventId, this);
+                emitter.completeWithError(e);
+                return;
+            } finally {
+                sending.set(false);
+            }
+            //a message offered between the last getAndSet and releasing the flag
+            if (pending.get() != null) {
+                startDrain();
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.standingcat.event.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//In-memory seat counter that sits in front of EventRepository.claimSeat.
+//It keeps the number of seats this node believes are left for events it has seen recently, so when a
+//popular event opens only about as many requests as there are seats go on to the database row lock and
+//everyone else is turned away without a query. The conditional UPDATE stays the source of truth,
+//this counter is only ever allowed to say "no" early. Entries expire so another node freeing seats is picked up.
+@Component
+public class SeatCounter {
+    private final ConcurrentHashMap<Long, Seats> seats = new ConcurrentHashMap<>();
+    private final long ttlNanos;
+
+    public SeatCounter(@Value("${enrollment.seat-counter.ttl:30s}") Duration ttl) {
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    //start tracking an event, keeps the existing entry if it is still fresh
+    public void prime(Long eventId, Integer capacity, int enrolledCount) {
+        if (capacity == null) {
+            return; //unlimited events never run out, nothing to track
+        }
+        long now = System.nanoTime();
+        seats.compute(eventId, (id, current) -> current == null || current.isExpired(now, ttlNanos)
+                ? new Seats(new AtomicInteger(Math.max(0, capacity - enrolledCount)), now)
+                : current);
+    }
+
+    public Reservation tryReserve(Long eventId) {
+        Seats entry = seats.get(eventId);
+        if (entry == null) {
+            return Reservation.UNTRACKED;
+        }
+        if (entry.isExpired(System.nanoTime(), ttlNanos)) {
+            seats.remove(eventId, entry);
+            return Reservation.UNTRACKED;
+        }
+        AtomicInteger remaining = entry.remaining();
+        int current;
+        do {
+            current = remaining.get();
+            if (current <= 0) {
+                return Reservation.SOLD_OUT;
+            }
+        } while (!remaining.compareAndSet(current, current - 1));
+        return new Reservation(remaining);
+    }
+
+    //the database said the event is full, agree with it until a seat is released or the entry expires
+    public void soldOut(Long eventId) {
+        seats.put(eventId, new Seats(new AtomicInteger(0), System.nanoTime()));
+    }
+
+    //a committed un-enrollment gave a seat back
+    public void release(Long eventId) {
+        Seats entry = seats.get(eventId);
+        if (entry != null) {
+            entry.remaining().incrementAndGet();
+        }
+    }
+
+    //capacity changed or the event is gone, next enrollment primes it again
+    public void evict(Long eventId) {
+        seats.remove(eventId);
+    }
+
+    private record Seats(AtomicInteger remaining, long primedAt) {
+        boolean isExpired(long now, long ttlNanos) {
+            return now - primedAt > ttlNanos;
+        }
+    }
+
+    public static final class Reservation {
+        static final Reservation UNTRACKED = new Reservation(null);
+        static final Reservation SOLD_OUT = new Reservation(null);
+
+        private final AtomicInteger counter;
+
+        private Reservation(AtomicInteger counter) {
+            this.counter = counter;
+        }
+
+        public boolean isSoldOut() {
+            return this == SOLD_OUT;
+        }
+
+        //the counter doesn't know the event yet, the database decides alone
+        public boolean isUntracked() {
+            return this == UNTRACKED;
+        }
+
+        //gives the seat back to the counter it was taken from, e.g. when the enrollment rolled back.
+        //if the entry was replaced in the meantime the old counter is simply garbage
+        public void cancel() {
+            if (counter != null) {
+                counter.incrementAndGet();
+            }
+        }
+    }
+}
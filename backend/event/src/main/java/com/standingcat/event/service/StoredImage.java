@@ -0,0 +1,9 @@
+package com.standingcat.event.service;
+
+import lombok.Value;
+
+@Value
+public class StoredImage {
+    String url;
+    String publicId;
+}
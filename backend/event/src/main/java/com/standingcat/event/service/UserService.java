@@ -1,9 +1,11 @@
 package com.standingcat.event.service;
 
 import com.standingcat.event.exception.EmailAlreadyRegisteredException;
+import com.standingcat.event.exception.UserNotFoundException;
 import com.standingcat.event.exception.UsernameAlreadyTakenException;
 import com.standingcat.event.model.User;
 import com.standingcat.event.repository.UserRepository;
+import com.standingcat.event.security.jwt.PrincipalCache;
 import jakarta.transaction.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -15,12 +17,17 @@ import java.util.Set;
 
 @Service
 public class UserService {
+    private static final Set<String> KNOWN_ROLES = Set.of("ROLE_USER", "ROLE_ADMIN");
+
     @Autowired
     private UserRepository userRepository;
 
     @Autowired
     private PasswordEncoder passwordEncoder;
 
+    @Autowired
+    private PrincipalCache principalCache;
+
     @Transactional
     public User registerNewUser(User user){
 
@@ -63,6 +70,32 @@ public class UserService {
         return newUser;
     }
 
+    //called during login when the stored hash was made with a different BCrypt strength than configured
+    @Transactional
+    public void rehashPassword(String username, String encodedPassword) {
+        userRepository.updatePassword(username, encodedPassword);
+    }
+
+    //replaces a user's roles. the principal cache entry is dropped after commit so tokens
+    //still carrying a removed role lose it on their next request
+    @Transactional
+    public User updateRoles(Long userId, Set<String> roles) {
+        if (roles == null || roles.isEmpty() || !KNOWN_ROLES.containsAll(roles)) {
+            throw new IllegalArgumentException("Roles must be some of " + KNOWN_ROLES + ".");
+        }
+        User user = userRepository.findById(userId)
+                .orElseThrow(() -> new UserNotFoundException("User not found."));
+        user.setRoles(new HashSet<>(roles));
+        User saved = userRepository.save(user);
+        TransactionHooks.afterCommit(() -> principalCache.evict(saved.getUsername()));
+        return saved;
+    }
+
+    //for associations only, no query. inserting it fails on the foreign key if the user is gone
+    public User getReference(Long id) {
+        return userRepository.getReferenceById(id);
+    }
+
     public Optional<User> findById(Long id) {
         return userRepository.findById(id);
     }
@@ -0,0 +1,62 @@
+package com.standingcat.event.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Function;
+
+//In-memory copy of each event's waitlist, entry id -> user id in queue (id) order.
+//A line is loaded from the database the first time it is needed and then kept in step by WaitlistService
+//after each commit, so picking who is next never scans the table. waitlist_entry stays the source of truth:
+//promotion deletes the row it picked and skips anyone whose row is already gone.
+@Component
+public class WaitlistQueue {
+    private final ConcurrentHashMap<Long, ConcurrentSkipListMap<Long, Long>> lines = new ConcurrentHashMap<>();
+
+    //loader returns {entry id, user id} pairs for the event
+    public List<Map.Entry<Long, Long>> head(Long eventId, int count, Function<Long, List<Object[]>> loader) {
+        ConcurrentSkipListMap<Long, Long> line = lines.computeIfAbsent(eventId, id -> load(id, loader));
+        List<Map.Entry<Long, Long>> head = new ArrayList<>(Math.min(count, line.size()));
+        for (Map.Entry<Long, Long> entry : line.entrySet()) {
+            if (head.size() == count) {
+                break;
+            }
+            head.add(Map.entry(entry.getKey(), entry.getValue()));
+        }
+        return head;
+    }
+
+    //an entry that committed, ignored if the line isn't loaded since the next load reads it anyway
+    public void added(Long eventId, Long entryId, Long userId) {
+        ConcurrentSkipListMap<Long, Long> line = lines.get(eventId);
+        if (line != null) {
+            line.put(entryId, userId);
+        }
+    }
+
+    public void removed(Long eventId, Collection<Long> entryIds) {
+        ConcurrentSkipListMap<Long, Long> line = lines.get(eventId);
+        if (line != null) {
+            entryIds.forEach(line::remove);
+            //empty lines are dropped so finished events don't pin memory, a later load is cheap
+            lines.remove(eventId, new ConcurrentSkipListMap<Long, Long>());
+        }
+    }
+
+    public void evict(Long eventId) {
+        lines.remove(eventId);
+    }
+
+    private static ConcurrentSkipListMap<Long, Long> load(Long eventId, Function<Long, List<Object[]>> loader) {
+        ConcurrentSkipListMap<Long, Long> line = new ConcurrentSkipListMap<>();
+        for (Object[] row : loader.apply(eventId)) {
+            line.put((Long) row[0], (Long) row[1]);
+        }
+        return line;
+    }
+}
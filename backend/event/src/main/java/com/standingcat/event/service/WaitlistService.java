@@ -0,0 +1,220 @@
+package com.standingcat.event.service;
+
+import com.standingcat.event.dto.WaitlistResponse;
+import com.standingcat.event.exception.EventNotFoundException;
+import com.standingcat.event.exception.UserAlreadyEnrolledException;
+import com.standingcat.event.exception.WaitlistEntryNotFoundException;
+import com.standingcat.event.model.Enrollment;
+import com.standingcat.event.model.Event;
+import com.standingcat.event.model.User;
+import com.standingcat.event.model.WaitlistEntry;
+import com.standingcat.event.repository.EnrollmentRepository;
+import com.standingcat.event.repository.EventRepository;
+import com.standingcat.event.repository.WaitlistEntryRepository;
+import jakarta.transaction.Transactional;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+//FIFO waitlist per event. Instead of retrying a full event, a user joins the line once and gets the seat
+//when one frees up: un-enrolling (by the user or an admin) and raising the capacity all call promote,
+//which moves as many people as there are seats from the line into enrollments in the caller's transaction.
+@Service
+public class WaitlistService {
+    private static final String UNIQUE_VIOLATION = "23505";
+
+    @Autowired
+    private WaitlistEntryRepository waitlistEntryRepository;
+
+    @Autowired
+    private EnrollmentRepository enrollmentRepository;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private EmailService emailService;
+
+    @Autowired
+    private WaitlistQueue waitlistQueue;
+
+    @Autowired
+    private SeatCounter seatCounter;
+
+    @Autowired
+    private EventCatalogueCache catalogueCache;
+
+    @Autowired
+    private EnrollmentMetrics enrollmentMetrics;
+
+    @Autowired
+    private EnrolledEventsCache enrolledEvents;
+
+    @Autowired
+    private SeatAvailabilityBroadcaster seatAvailability;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${waitlist.promotion-batch-size:50}")
+    private int promotionBatchSize;
+
+    //Joining twice keeps the original place in line. Two joins by the same user at once both miss the entry, the
+    //second insert then hits the (user_id, event_id) unique key and its transaction can't read anything else on
+    //Postgres, so what the first one left is read in a new transaction.
+    public WaitlistResponse join(Long userId, Long eventId) {
+        try {
+            return transactionTemplate.execute(status -> joinLine(userId, eventId));
+        } catch (DataIntegrityViolationException e) {
+            if (!UNIQUE_VIOLATION.equals(EnrollmentService.sqlState(e))) {
+                throw e;
+            }
+            return transactionTemplate.execute(status -> joined(userId, eventId));
+        }
+    }
+
+    private WaitlistResponse joinLine(Long userId, Long eventId) {
+        Event event = eventRepository.findById(eventId)
+                .orElseThrow(() -> new EventNotFoundException("Event not found."));
+        if (enrollmentRepository.existsByUserIdAndEventId(userId, eventId)) {
+            throw new UserAlreadyEnrolledException("User already enrolled.");
+        }
+
+        Optional<WaitlistEntry> existing = waitlistEntryRepository.findByUserIdAndEventId(userId, eventId);
+        if (existing.isPresent()) {
+            return new WaitlistResponse(eventId, false, position(eventId, existing.get().getId()));
+        }
+        TransactionHooks.afterCommit(enrollmentMetrics::waitlisted);
+
+        //the id comes from the token, a reference is enough to insert the row
+        User user = userService.getReference(userId);
+        WaitlistEntry entry = waitlistEntryRepository.save(new WaitlistEntry(null, user, event, LocalDateTime.now()));
+        Long entryId = entry.getId();
+        //a line loaded from the database inside this transaction already holds the entry, don't keep it if this rolls back
+        TransactionHooks.afterRollback(() -> waitlistQueue.removed(eventId, List.of(entryId)));
+
+        //a seat may have been freed between the failed enrollment and now, the people already in line get it first
+        promote(eventId);
+        if (enrollmentRepository.existsByUserIdAndEventId(userId, eventId)) {
+            return new WaitlistResponse(eventId, true, null);
+        }
+        if (eventRepository.claimSeat(eventId) == 1) {
+            //nobody is left ahead and a seat is still free, so the new entry is next
+            waitlistEntryRepository.deleteEntry(entryId);
+            enroll(userId, eventId);
+            promoted(eventId, 1);
+            return new WaitlistResponse(eventId, true, null);
+        }
+        //joins the in-memory line only once the row is committed
+        TransactionHooks.afterCommit(() -> waitlistQueue.added(eventId, entryId, userId));
+        return new WaitlistResponse(eventId, false, position(eventId, entryId));
+    }
+
+    //the other join either left the user in line or already gave them a seat
+    private WaitlistResponse joined(Long userId, Long eventId) {
+        if (enrollmentRepository.existsByUserIdAndEventId(userId, eventId)) {
+            return new WaitlistResponse(eventId, true, null);
+        }
+        WaitlistEntry entry = waitlistEntryRepository.findByUserIdAndEventId(userId, eventId)
+                .orElseThrow(() -> new WaitlistEntryNotFoundException("Not on the waitlist."));
+        return new WaitlistResponse(eventId, false, position(eventId, entry.getId()));
+    }
+
+    @Transactional
+    public void leave(Long userId, Long eventId) {
+        WaitlistEntry entry = waitlistEntryRepository.findByUserIdAndEventId(userId, eventId)
+                .orElseThrow(() -> new WaitlistEntryNotFoundException("Not on the waitlist."));
+        Long entryId = entry.getId();
+        waitlistEntryRepository.deleteEntry(entryId);
+        TransactionHooks.afterCommit(() -> waitlistQueue.removed(eventId, List.of(entryId)));
+    }
+
+    //Fills free seats from the front of the line, returns how many were enrolled.
+    //Each promotion claims the seat with the same conditional update as a normal enrollment, so this stops at
+    //the first one that doesn't fit and needs no separate capacity read.
+    @Transactional
+    public int promote(Long eventId) {
+        List<Long> seen = new ArrayList<>();
+        //only what this transaction deleted, an entry someone else took is taken out of the line by them
+        List<Long> removed = new ArrayList<>();
+        int promoted = 0;
+        boolean full = false;
+        while (!full) {
+            List<Map.Entry<Long, Long>> next = waitlistQueue.head(eventId, promotionBatchSize + seen.size(),
+                    waitlistEntryRepository::findQueue);
+            next = next.stream().filter(candidate -> !seen.contains(candidate.getKey())).toList();
+            if (next.isEmpty()) {
+                break;
+            }
+            for (Map.Entry<Long, Long> candidate : next) {
+                Long entryId = candidate.getKey();
+                Long userId = candidate.getValue();
+                seen.add(entryId);
+                if (enrollmentRepository.existsByUserIdAndEventId(userId, eventId)) {
+                    //got in some other way, just leaves the line
+                    if (waitlistEntryRepository.deleteEntry(entryId) == 1) {
+                        removed.add(entryId);
+                    }
+                    continue;
+                }
+                if (eventRepository.claimSeat(eventId) == 0) {
+                    full = true;
+                    break;
+                }
+                if (waitlistEntryRepository.deleteEntry(entryId) == 0) {
+                    eventRepository.releaseSeat(eventId); //left the line or promoted elsewhere meanwhile
+                    continue;
+                }
+                removed.add(entryId);
+                enroll(userId, eventId);
+                promoted++;
+            }
+        }
+
+        if (!removed.isEmpty()) {
+            TransactionHooks.afterCommit(() -> waitlistQueue.removed(eventId, removed));
+        }
+        if (promoted > 0) {
+            promoted(eventId, promoted);
+        }
+        return promoted;
+    }
+
+    private void promoted(Long eventId, int count) {
+        TransactionHooks.afterCommit(() -> enrollmentMetrics.promoted(count));
+        TransactionHooks.afterCommit(() -> seatCounter.evict(eventId));
+        TransactionHooks.afterCommit(() -> seatAvailability.seatsChanged(eventId));
+        catalogueCache.evictEvent(eventId);
+    }
+
+    //the line goes with the event, the rows are removed by the foreign key cascade
+    public void forgetEvent(Long eventId) {
+        TransactionHooks.afterCommit(() -> waitlistQueue.evict(eventId));
+    }
+
+    //a user in the line exists, their entry goes when they do, so references are enough and neither row is read
+    private void enroll(Long userId, Long eventId) {
+        Enrollment enrollment = new Enrollment();
+        enrollment.setUser(userService.getReference(userId));
+        enrollment.setEvent(eventRepository.getReferenceById(eventId));
+        enrollment.setEnrollmentTime(LocalDateTime.now());
+        enrollmentRepository.save(enrollment);
+        emailService.sendEnrollmentConfirmation(userId, eventId);
+        TransactionHooks.afterCommit(() -> enrolledEvents.added(userId, eventId));
+    }
+
+    private int position(Long eventId, Long entryId) {
+        return (int) waitlistEntryRepository.countAhead(eventId, entryId);
+    }
+}
@@ -0,0 +1,12 @@
+CREATE TABLE waitlist_entry (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    user_id BIGINT NOT NULL,
+    event_id BIGINT NOT NULL,
+    joined_at DATETIME NOT NULL,
+    FOREIGN KEY (user_id) REFERENCES app_user(id) ON DELETE CASCADE,
+    FOREIGN KEY (event_id) REFERENCES app_event(id) ON DELETE CASCADE,
+    UNIQUE (user_id, event_id)
+);
+
+-- FIFO order per event is the id order
+CREATE INDEX idx_waitlist_entry_event_id ON waitlist_entry (event_id, id);
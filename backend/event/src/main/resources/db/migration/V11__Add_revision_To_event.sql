@@ -0,0 +1,3 @@
+-- bumped on every edit of the event row, with enrolled_count it makes the ETag of the event
+ALTER TABLE app_event
+ADD COLUMN revision BIGINT NOT NULL DEFAULT 0;
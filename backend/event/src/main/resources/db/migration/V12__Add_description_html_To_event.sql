@@ -0,0 +1,5 @@
+-- descriptionMarkdown rendered to sanitized HTML on save, and the SHA-256 (hex) of the markdown it was rendered from
+ALTER TABLE app_event
+ADD COLUMN description_html TEXT;
+ALTER TABLE app_event
+ADD COLUMN description_hash VARCHAR(64);
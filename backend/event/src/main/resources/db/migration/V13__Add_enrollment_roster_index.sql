@@ -0,0 +1,2 @@
+-- admin roster of an event paged by (enrollment_time, id), without sorting the event's enrollments
+CREATE INDEX idx_enrollment_event_time_id ON enrollment (event_id, enrollment_time, id);
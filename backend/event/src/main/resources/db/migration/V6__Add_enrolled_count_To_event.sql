@@ -0,0 +1,5 @@
+ALTER TABLE app_event
+ADD COLUMN enrolled_count INTEGER NOT NULL DEFAULT 0;
+
+UPDATE app_event
+SET enrolled_count = (SELECT COUNT(*) FROM enrollment WHERE enrollment.event_id = app_event.id);
@@ -0,0 +1,5 @@
+-- keyset pagination over visible events ordered by (event_time, id)
+CREATE INDEX idx_app_event_visible_time_id ON app_event (is_hidden, event_time, id);
+
+-- same ordering when the listing is filtered by owner
+CREATE INDEX idx_app_event_owner_time_id ON app_event (owner_id, event_time, id);
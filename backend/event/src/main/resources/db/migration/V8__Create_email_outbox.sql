@@ -0,0 +1,15 @@
+CREATE TABLE email_outbox (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    recipient VARCHAR(255) NOT NULL,
+    subject VARCHAR(255) NOT NULL,
+    body VARCHAR(4000) NOT NULL,
+    status VARCHAR(16) NOT NULL,
+    attempts INTEGER NOT NULL DEFAULT 0,
+    next_attempt_at DATETIME NOT NULL,
+    created_at DATETIME NOT NULL,
+    sent_at DATETIME,
+    last_error VARCHAR(1000)
+);
+
+-- the dispatcher polls for due PENDING rows oldest first
+CREATE INDEX idx_email_outbox_status_next_attempt ON email_outbox (status, next_attempt_at, id);
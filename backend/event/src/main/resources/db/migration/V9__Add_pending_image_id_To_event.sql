@@ -0,0 +1,3 @@
+-- id of the staged upload an event is waiting on, the background upload only applies if it still matches
+ALTER TABLE app_event
+ADD COLUMN pending_image_id VARCHAR(64);
@@ -11,9 +11,15 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.RequestPostProcessor;
 
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.cookie;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -145,7 +151,7 @@ public class AuthTest {
                         .contentType(MediaType.APPLICATION_JSON)
                         .content("{\"username\":\"newuser\", \"password\":\"newpass123\"}"))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$.token").exists());
+                .andExpect(cookie().exists("jwt"));
     }
     @Test
     void loginUser_invalidPassword() throws Exception {
@@ -180,4 +186,79 @@ public class AuthTest {
                 .andExpect(jsonPath("$.error").value("Invalid username or password"));
     }
 
+    @Test
+    void loginUser_throttledAfterRepeatedFailures() throws Exception {
+        //five wrong guesses are answered normally, the sixth is refused without checking the password
+        for (int i = 0; i < 5; i++) {
+            mockMvc.perform(post("/api/auth/login")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"username\":\"jwtuser\", \"password\":\"guess" + i + "\"}"))
+                    .andExpect(status().isUnauthorized());
+        }
+
+        mockMvc.perform(post("/api/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"username\":\"jwtuser\", \"password\":\"secret123\"}"))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().exists("Retry-After"));
+    }
+
+    @Test
+    void loginUser_failuresFromOneAddressDontLockOutAnother() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            mockMvc.perform(post("/api/auth/login")
+                            .with(remoteAddr("10.0.0.1"))
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"username\":\"jwtuser\", \"password\":\"guess" + i + "\"}"))
+                    .andExpect(status().isUnauthorized());
+        }
+
+        mockMvc.perform(post("/api/auth/login")
+                        .with(remoteAddr("10.0.0.2"))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"username\":\"jwtuser\", \"password\":\"secret123\"}"))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void updateRoles_adminReplacesRoles() throws Exception {
+        Long id = userRepository.findByUsername("jwtuser").orElseThrow().getId();
+
+        mockMvc.perform(put("/api/users/{id}/roles", id)
+                        .with(user("admin").roles("ADMIN"))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[\"ROLE_USER\", \"ROLE_ADMIN\"]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.username").value("jwtuser"))
+                .andExpect(jsonPath("$.roles", hasSize(2)));
+
+        assertEquals(Set.of("ROLE_USER", "ROLE_ADMIN"), userRepository.findByUsername("jwtuser").orElseThrow().getRoles());
+    }
+
+    @Test
+    void updateRoles_rejectsUnknownRolesAndNonAdmins() throws Exception {
+        Long id = userRepository.findByUsername("jwtuser").orElseThrow().getId();
+
+        mockMvc.perform(put("/api/users/{id}/roles", id)
+                        .with(user("admin").roles("ADMIN"))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[\"ROLE_ROOT\"]"))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(put("/api/users/{id}/roles", id)
+                        .with(user("jwtuser").roles("USER"))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[\"ROLE_ADMIN\"]"))
+                .andExpect(status().isForbidden());
+
+        assertEquals(Set.of("ROLE_USER"), userRepository.findByUsername("jwtuser").orElseThrow().getRoles());
+    }
+
+    private static RequestPostProcessor remoteAddr(String address) {
+        return request -> {
+            request.setRemoteAddr(address);
+            return request;
+        };
+    }
+
 }
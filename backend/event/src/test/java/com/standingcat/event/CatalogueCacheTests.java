@@ -0,0 +1,140 @@
+package com.standingcat.event;
+
+import com.standingcat.event.config.TestSecurityConfig;
+import com.standingcat.event.model.Event;
+import com.standingcat.event.model.User;
+import com.standingcat.event.repository.EventRepository;
+import com.standingcat.event.repository.UserRepository;
+import com.standingcat.event.service.EventCatalogueCache;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpMethod;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+//No @Transactional here: every request commits, so the after-commit evictions really run and a cached snapshot
+//or ETag that outlives a change shows up. The rows are removed again after each test.
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@Import(TestSecurityConfig.class)
+class CatalogueCacheTests {
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EventCatalogueCache catalogueCache;
+
+    private User admin;
+    private User attendee;
+    private Event event;
+
+    @BeforeEach
+    void setup() {
+        catalogueCache.evictAll();
+        admin = userRepository.save(new User(null, "cacheadmin", "password", "cacheadmin@example.com",
+                Set.of("ROLE_ADMIN"), null, new HashSet<>()));
+        attendee = userRepository.save(new User(null, "cacheuser", "password", "cacheuser@example.com",
+                Set.of("ROLE_USER"), null, new HashSet<>()));
+        Event cached = new Event();
+        cached.setTitle("Cached Event");
+        cached.setDescription("Description");
+        cached.setEventTime(LocalDateTime.of(2030, 1, 1, 10, 0));
+        cached.setOwner(admin);
+        cached.setCapacity(5);
+        event = eventRepository.save(cached);
+    }
+
+    //events, enrollments and waitlist entries go with their users through the foreign keys
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.update("DELETE FROM email_outbox WHERE recipient IN (?, ?)", admin.getEmail(), attendee.getEmail());
+        jdbcTemplate.update("DELETE FROM app_user WHERE id IN (?, ?)", admin.getId(), attendee.getId());
+        catalogueCache.evictAll();
+    }
+
+    @Test
+    void enrolling_and_leaving_refresh_the_cached_seat_count_and_etag() throws Exception {
+        String etag = mockMvc.perform(get("/api/events/{id}", event.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.currentEnrollments").value(0))
+                .andReturn().getResponse().getHeader("ETag");
+        mockMvc.perform(get("/api/events"))
+                .andExpect(jsonPath("$[?(@.id == " + event.getId() + ")].currentEnrollments", contains(0)));
+
+        mockMvc.perform(post("/api/enrollments/{eventId}", event.getId()).with(user("cacheuser").roles("USER")))
+                .andExpect(status().isCreated());
+
+        String enrolledEtag = mockMvc.perform(get("/api/events/{id}", event.getId()).header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.currentEnrollments").value(1))
+                .andReturn().getResponse().getHeader("ETag");
+        assertNotEquals(etag, enrolledEtag);
+        mockMvc.perform(get("/api/events"))
+                .andExpect(jsonPath("$[?(@.id == " + event.getId() + ")].currentEnrollments", contains(1)));
+
+        mockMvc.perform(delete("/api/enrollments/{eventId}", event.getId()).with(user("cacheuser").roles("USER")))
+                .andExpect(status().isNoContent());
+
+        mockMvc.perform(get("/api/events/{id}", event.getId()).header("If-None-Match", enrolledEtag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.currentEnrollments").value(0));
+    }
+
+    @Test
+    void updating_hiding_and_deleting_refresh_the_catalogue() throws Exception {
+        mockMvc.perform(get("/api/events/{id}", event.getId()))
+                .andExpect(jsonPath("$.title").value("Cached Event"));
+        mockMvc.perform(get("/api/events"))
+                .andExpect(jsonPath("$[?(@.id == " + event.getId() + ")].title", contains("Cached Event")));
+
+        mockMvc.perform(multipart(HttpMethod.PUT, "/api/events/{id}", event.getId())
+                        .with(user("cacheadmin").roles("ADMIN"))
+                        .param("title", "Renamed Event")
+                        .param("description", "Description")
+                        .param("eventTime", "2030-01-01T10:00:00")
+                        .param("capacity", "5"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/events/{id}", event.getId()))
+                .andExpect(jsonPath("$.title").value("Renamed Event"));
+        mockMvc.perform(get("/api/events"))
+                .andExpect(jsonPath("$[?(@.id == " + event.getId() + ")].title", contains("Renamed Event")));
+
+        mockMvc.perform(patch("/api/events/{id}/hide", event.getId()).with(user("cacheadmin").roles("ADMIN")))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/events"))
+                .andExpect(jsonPath("$[?(@.id == " + event.getId() + ")]", empty()));
+
+        mockMvc.perform(delete("/api/events/{id}", event.getId()).with(user("cacheadmin").roles("ADMIN")))
+                .andExpect(status().isNoContent());
+        mockMvc.perform(get("/api/events/{id}", event.getId()))
+                .andExpect(status().isNotFound());
+    }
+}
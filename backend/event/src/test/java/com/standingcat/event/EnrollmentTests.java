@@ -1,15 +1,22 @@
 package com.standingcat.event;
 
+import com.jayway.jsonpath.JsonPath;
 import com.standingcat.event.config.TestSecurityConfig;
 import com.standingcat.event.model.Enrollment;
 import com.standingcat.event.model.Event;
 import com.standingcat.event.model.User;
+import com.standingcat.event.model.WaitlistEntry;
 import com.standingcat.event.repository.EnrollmentRepository;
 import com.standingcat.event.repository.EventRepository;
 import com.standingcat.event.repository.UserRepository;
+import com.standingcat.event.repository.WaitlistEntryRepository;
+import com.standingcat.event.service.EventCatalogueCache;
 import com.standingcat.event.security.jwt.JwtAuthenticationFilter;
+import com.standingcat.event.service.EnrollmentService;
+import com.standingcat.event.service.EnrollmentTransferService;
 import jakarta.persistence.EntityManager;
 import jakarta.transaction.Transactional;
+import org.hibernate.Hibernate;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -21,15 +28,24 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.transaction.AfterTransaction;
 import org.springframework.test.web.servlet.MockMvc;
 
 
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
@@ -46,6 +62,9 @@ class EnrollmentTests {
 	//@MockBean
 	//private JwtAuthenticationFilter jwtAuthenticationFilter;
 
+	@Autowired
+	private EventCatalogueCache catalogueCache;
+
 	@Autowired
 	private MockMvc mockMvc;
 
@@ -61,9 +80,24 @@ class EnrollmentTests {
 	@Autowired
 	private EntityManager entityManager;
 
+	@Autowired
+	private EnrollmentTransferService enrollmentTransferService;
+
+	@Autowired
+	private WaitlistEntryRepository waitlistEntryRepository;
+
+	@Autowired
+	private UserDetailsService userDetailsService;
+
 	private User testUser;
 	private Event testEvent;
 
+	//the test rolls back, so none of the after-commit evictions ran. its snapshots must not reach the next test
+	@AfterTransaction
+	void forgetCachedCatalogue() {
+		catalogueCache.evictAll();
+	}
+
 	@BeforeEach
 	void setup() {
 		testUser = userRepository.save(new User(
@@ -74,7 +108,7 @@ class EnrollmentTests {
 				Set.of("ROLE_USER"),
 				null,
 				new HashSet<>()));
-		testEvent = eventRepository.save(new Event(
+		testEvent = eventRepository.save(event(
 				null,
 				"Test Event",
 				"Description",
@@ -82,8 +116,14 @@ class EnrollmentTests {
 				LocalDateTime.now(),
 				false,
 				testUser,
-				5,
-				new HashSet<>()));
+				5));
+	}
+
+	//roles are stored as ROLE_ names and become the authorities unchanged
+	@Test
+	void userDetailsService_grantsStoredRoles() {
+		UserDetails details = userDetailsService.loadUserByUsername("testuser");
+		assertEquals(Set.of("ROLE_USER"), AuthorityUtils.authorityListToSet(details.getAuthorities()));
 	}
 
 	@Test
@@ -91,7 +131,7 @@ class EnrollmentTests {
 	void enrollUser_success() throws Exception {
 		mockMvc.perform(post("/api/enrollments/{eventId}", testEvent.getId()))
 				.andExpect(status().isCreated())
-				.andExpect(jsonPath("$.user.username").value("testuser"));
+				.andExpect(jsonPath("$.userId").value(testUser.getId()));
 
 		assertTrue(enrollmentRepository.existsByUserAndEvent(testUser, testEvent));
 	}
@@ -102,7 +142,7 @@ class EnrollmentTests {
 	void enrollUser_successPersistence() throws Exception {
 		mockMvc.perform(post("/api/enrollments/{eventId}", testEvent.getId()))
 				.andExpect(status().isCreated())
-				.andExpect(jsonPath("$.user.username").value("testuser"));
+				.andExpect(jsonPath("$.userId").value(testUser.getId()));
 
 		//Check enrollment exists in repository
 		assertTrue(enrollmentRepository.existsByUserAndEvent(testUser, testEvent));
@@ -155,9 +195,9 @@ class EnrollmentTests {
 	@Test
 	void enrollUser_eventFull() throws Exception {
 		// Arrange — create event with capacity 2
-		Event fullEvent = eventRepository.save(new Event(
+		Event fullEvent = eventRepository.save(event(
 				null, "Full Event", "Description", "image.jpg",
-				LocalDateTime.now(), false, testUser, 2, new HashSet<>()
+				LocalDateTime.now(), false, testUser, 2
 		));
 
 		// Create users in the DB
@@ -189,6 +229,52 @@ class EnrollmentTests {
 						.with(user("thirduser").roles("USER")))
 				.andExpect(status().isBadRequest())
 				.andExpect(jsonPath("$.error").value("Event is at full capacity."));
+
+		//the counter now knows the event is full, someone already in still hears they are enrolled
+		mockMvc.perform(post("/api/enrollments/{eventId}", fullEvent.getId())
+						.with(user("firstuser").roles("USER")))
+				.andExpect(status().isBadRequest())
+				.andExpect(jsonPath("$.error").value("User already enrolled."));
+	}
+
+	//a full event puts the user on the waitlist, the seat freed by an un-enroll goes to them
+	@Test
+	void enrollUser_waitlistPromotedOnUnEnroll() throws Exception {
+		Event fullEvent = eventRepository.save(event(
+				null, "Full Event", "Description", "image.jpg",
+				LocalDateTime.now(), false, testUser, 1
+		));
+		User waitingUser = userRepository.save(new User(
+				null, "waitinguser", "password", "waiting@example.com",
+				Set.of("ROLE_USER"), null, new HashSet<>()
+		));
+
+		mockMvc.perform(post("/api/enrollments/{eventId}", fullEvent.getId())
+						.with(user("testuser").roles("USER")))
+				.andExpect(status().isCreated());
+
+		mockMvc.perform(post("/api/enrollments/{eventId}", fullEvent.getId())
+						.param("waitlist", "true")
+						.with(user("waitinguser").roles("USER")))
+				.andExpect(status().isAccepted())
+				.andExpect(jsonPath("$.enrolled").value(false))
+				.andExpect(jsonPath("$.position").value(1));
+
+		//joining again keeps the same place
+		mockMvc.perform(post("/api/enrollments/{eventId}", fullEvent.getId())
+						.param("waitlist", "true")
+						.with(user("waitinguser").roles("USER")))
+				.andExpect(status().isAccepted())
+				.andExpect(jsonPath("$.position").value(1));
+
+		mockMvc.perform(delete("/api/enrollments/{eventId}", fullEvent.getId())
+						.with(user("testuser").roles("USER")))
+				.andExpect(status().isNoContent());
+
+		assertTrue(enrollmentRepository.existsByUserIdAndEventId(waitingUser.getId(), fullEvent.getId()));
+		assertFalse(enrollmentRepository.existsByUserIdAndEventId(testUser.getId(), fullEvent.getId()));
+		entityManager.clear();
+		assertEquals(1, eventRepository.findById(fullEvent.getId()).orElseThrow().getEnrolledCount());
 	}
 
 	@Test
@@ -198,8 +284,7 @@ class EnrollmentTests {
 						.contentType(MediaType.APPLICATION_JSON))
 				.andExpect(status().isCreated())
 				// Ensure "password" is not included anywhere in the JSON
-				.andExpect(jsonPath("$.user.password").doesNotExist())
-				.andExpect(jsonPath("$.event.owner.password").doesNotExist());
+				.andExpect(jsonPath("$..password").doesNotExist());
 	}
 
 
@@ -236,6 +321,42 @@ class EnrollmentTests {
 
 	}
 
+	//roster pages by username, each page picking up after the cursor of the last
+	@Test
+	@WithMockUser(username = "admin", roles = "ADMIN")
+	void getRosterPage_byUsername() throws Exception {
+		for (String username : new String[]{"carol", "alice", "bob"}) {
+			User attendee = userRepository.save(new User(
+					null,
+					username,
+					"password",
+					username + "@example.com",
+					Set.of("ROLE_USER"),
+					null,
+					new HashSet<>()));
+			enrollmentRepository.save(new Enrollment(null, LocalDateTime.now(), attendee, testEvent));
+		}
+
+		String firstPage = mockMvc.perform(get("/api/enrollments/event/{eventId}/roster", testEvent.getId())
+						.param("sort", "username")
+						.param("limit", "2"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.enrollments[0].username").value("alice"))
+				.andExpect(jsonPath("$.enrollments[1].username").value("bob"))
+				.andExpect(jsonPath("$.enrollments[0].email").value("alice@example.com"))
+				.andReturn().getResponse().getContentAsString();
+		String cursor = JsonPath.read(firstPage, "$.nextCursor");
+
+		mockMvc.perform(get("/api/enrollments/event/{eventId}/roster", testEvent.getId())
+						.param("sort", "username")
+						.param("limit", "2")
+						.param("cursor", cursor))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.enrollments.length()").value(1))
+				.andExpect(jsonPath("$.enrollments[0].username").value("carol"))
+				.andExpect(jsonPath("$.nextCursor").doesNotExist());
+	}
+
 	//non admin tries to get all enrollments
 	@Test
 	@WithMockUser(username = "testuser", roles = "USER")
@@ -245,6 +366,94 @@ class EnrollmentTests {
 
 	}
 
+	//export streams every enrollment of the event, one row per line after the header
+	@Test
+	@WithMockUser(username = "testuser", roles = "USER")
+	void exportEnrollments_csv() throws Exception {
+		mockMvc.perform(post("/api/enrollments/{eventId}", testEvent.getId()))
+				.andExpect(status().isCreated());
+		entityManager.flush();
+
+		//called directly, the streaming body would run on another thread outside the test transaction
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		enrollmentTransferService.exportEnrollments(testEvent.getId(), EnrollmentTransferService.Format.CSV, out);
+
+		String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+		assertEquals(2, lines.length);
+		assertEquals("id,enrollmentTime,userId,email,username,eventId", lines[0]);
+		assertTrue(lines[1].endsWith(",test@example.com,testuser," + testEvent.getId()));
+	}
+
+	@Test
+	@WithMockUser(username = "admin", roles = "ADMIN")
+	void exportEnrollments_eventNotFound() throws Exception {
+		mockMvc.perform(get("/api/enrollments/event/{eventId}/export", testEvent.getId() + 9999))
+				.andExpect(status().isNotFound())
+				.andExpect(jsonPath("$.error").value("Event not found."));
+	}
+
+	//duplicates and unknown usernames are skipped, rows past capacity are rejected
+	@Test
+	@WithMockUser(username = "admin", roles = "ADMIN")
+	void importEnrollments_respectsCapacityAndUniqueness() throws Exception {
+		Enrollment existing = new Enrollment(null, LocalDateTime.now(), testUser, testEvent);
+		enrollmentRepository.save(existing);
+		eventRepository.claimSeat(testEvent.getId());
+		StringBuilder body = new StringBuilder("username\ntestuser\n");
+		for (int i = 1; i <= 6; i++) {
+			userRepository.save(new User(null, "bulk" + i, "password", "bulk" + i + "@example.com",
+					Set.of("ROLE_USER"), null, new HashSet<>()));
+			body.append("bulk").append(i).append('\n');
+		}
+		body.append("ghost\n");
+		entityManager.flush();
+
+		mockMvc.perform(post("/api/enrollments/event/{eventId}/import", testEvent.getId())
+						.contentType("text/csv")
+						.content(body.toString()))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.imported").value(4))
+				.andExpect(jsonPath("$.skipped").value(1))
+				.andExpect(jsonPath("$.overCapacity").value(3));
+
+		entityManager.clear();
+		Event refreshed = eventRepository.findById(testEvent.getId()).orElseThrow();
+		assertEquals(5, refreshed.getEnrolledCount());
+		assertEquals(5, enrollmentRepository.findByEvent(refreshed).size());
+	}
+
+	//an imported user who was waiting for a seat leaves the waitlist
+	@Test
+	@WithMockUser(username = "admin", roles = "ADMIN")
+	void importEnrollments_removesImportedUsersFromWaitlist() throws Exception {
+		User waiting = userRepository.save(new User(null, "waiting", "password", "waiting@example.com",
+				Set.of("ROLE_USER"), null, new HashSet<>()));
+		waitlistEntryRepository.save(new WaitlistEntry(null, waiting, testEvent, LocalDateTime.now()));
+		waitlistEntryRepository.save(new WaitlistEntry(null, testUser, testEvent, LocalDateTime.now()));
+		entityManager.flush();
+
+		mockMvc.perform(post("/api/enrollments/event/{eventId}/import", testEvent.getId())
+						.contentType("text/csv")
+						.content("waiting\n"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.imported").value(1));
+
+		entityManager.clear();
+		assertTrue(waitlistEntryRepository.findByUserIdAndEventId(waiting.getId(), testEvent.getId()).isEmpty());
+		assertTrue(waitlistEntryRepository.findByUserIdAndEventId(testUser.getId(), testEvent.getId()).isPresent());
+	}
+
+	//a file that isn't a username list is refused as a whole
+	@Test
+	@WithMockUser(username = "admin", roles = "ADMIN")
+	void importEnrollments_rejectsLinesLongerThanAUsername() throws Exception {
+		mockMvc.perform(post("/api/enrollments/event/{eventId}/import", testEvent.getId())
+						.contentType("text/csv")
+						.content("username\n" + "x".repeat(256) + "\n"))
+				.andExpect(status().isBadRequest())
+				.andExpect(jsonPath("$.error").value("Line 2 is too long to be a username."));
+	}
+
 
 	//get my enrollments
 	@Test
@@ -265,7 +474,7 @@ class EnrollmentTests {
 				null,
 				null
 		));
-		Event otherEvent = eventRepository.save(new Event(
+		Event otherEvent = eventRepository.save(event(
 				null,
 				"Other Event",
 				"Description",
@@ -273,8 +482,7 @@ class EnrollmentTests {
 				LocalDateTime.now(),
 				false,
 				otherUser,
-				5,
-				new HashSet<>()
+				5
 		));
 		Enrollment enrollment2 = new Enrollment();
 		enrollment2.setUser(otherUser);
@@ -282,7 +490,7 @@ class EnrollmentTests {
 		enrollment2.setEnrollmentTime(LocalDateTime.now());
 		enrollmentRepository.save(enrollment2);
 
-		Event anotherEvent = eventRepository.save(new Event(
+		Event anotherEvent = eventRepository.save(event(
 				null,
 				"Another Event",
 				"Description",
@@ -290,8 +498,7 @@ class EnrollmentTests {
 				LocalDateTime.now(),
 				false,
 				testUser,
-				5,
-				new HashSet<>()
+				5
 		));
 		Enrollment enrollment3 = new Enrollment();
 		enrollment3.setUser(testUser);
@@ -307,6 +514,23 @@ class EnrollmentTests {
 				.andExpect(jsonPath("$[1].user.username").value("testuser"));
 	}
 
+	//my-enrollments serializes the event owner too, it has to come with the same query instead of one load per event
+	@Test
+	void findByUserId_fetchesEventOwner() {
+		User owner = userRepository.save(new User(null, "owner", "password", "owner@example.com",
+				Set.of("ROLE_ADMIN"), null, new HashSet<>()));
+		Event ownedEvent = eventRepository.save(event(null, "Owned Event", "Description", "image.jpg",
+				LocalDateTime.now(), false, owner, 5));
+		enrollmentRepository.save(new Enrollment(null, LocalDateTime.now(), testUser, ownedEvent));
+		entityManager.flush();
+		entityManager.clear();
+
+		List<Enrollment> enrollments = enrollmentRepository.findByUserId(testUser.getId());
+
+		assertEquals(1, enrollments.size());
+		assertTrue(Hibernate.isInitialized(enrollments.get(0).getEvent().getOwner()));
+	}
+
 	//user is authenticated but not in the database while trying to get enrollments
 	@Test
 	@WithMockUser(username = "fakeuser", roles = {"USER"})
@@ -326,13 +550,99 @@ class EnrollmentTests {
 				.andExpect(jsonPath("$").isEmpty());
 	}
 
+	//without upcoming there is no lower bound, an enrollment in an event of any date is listed
+	@Test
+	@WithMockUser(username = "testuser", roles = {"USER"})
+	void getMyEnrollmentsPage_listsEventsBefore1970() throws Exception {
+		Event old = eventRepository.save(event(
+				null,
+				"Old Event",
+				"Description",
+				"image.jpg",
+				LocalDateTime.of(1965, 6, 1, 10, 0),
+				false,
+				testUser,
+				5));
+		enrollmentRepository.save(new Enrollment(null, LocalDateTime.now(), testUser, old));
+
+		mockMvc.perform(get("/api/enrollments/my-enrollments/page"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.enrollments.length()").value(1))
+				.andExpect(jsonPath("$.enrollments[0].title").value("Old Event"));
+	}
+
+	//upcoming leaves out testEvent (it started at setup), the rest come in event time order one page at a time
+	@Test
+	@WithMockUser(username = "testuser", roles = {"USER"})
+	void getMyEnrollmentsPage_upcomingWithCursor() throws Exception {
+		enrollmentRepository.save(new Enrollment(null, LocalDateTime.now(), testUser, testEvent));
+		for (int days : new int[]{9, 3}) {
+			Event future = eventRepository.save(event(
+					null,
+					"In " + days + " days",
+					"Description",
+					"image.jpg",
+					LocalDateTime.now().plusDays(days),
+					false,
+					testUser,
+					5));
+			enrollmentRepository.save(new Enrollment(null, LocalDateTime.now(), testUser, future));
+		}
+
+		String body = mockMvc.perform(get("/api/enrollments/my-enrollments/page")
+						.param("upcoming", "true")
+						.param("limit", "1"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.enrollments.length()").value(1))
+				.andExpect(jsonPath("$.enrollments[0].title").value("In 3 days"))
+				.andExpect(jsonPath("$.nextCursor").isNotEmpty())
+				.andReturn().getResponse().getContentAsString();
+		String cursor = JsonPath.read(body, "$.nextCursor");
+
+		mockMvc.perform(get("/api/enrollments/my-enrollments/page")
+						.param("upcoming", "true")
+						.param("limit", "1")
+						.param("cursor", cursor))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.enrollments[0].title").value("In 9 days"))
+				.andExpect(jsonPath("$.nextCursor").doesNotExist());
+	}
+
+	//one call answers for a whole page of event cards, unknown ids are simply not enrolled
+	@Test
+	@WithMockUser(username = "testuser", roles = {"USER"})
+	void checkEnrolled_returnsEnrolledSubset() throws Exception {
+		enrollmentRepository.save(new Enrollment(null, LocalDateTime.now(), testUser, testEvent));
+
+		mockMvc.perform(post("/api/enrollments/check")
+						.contentType(MediaType.APPLICATION_JSON)
+						.content("[" + testEvent.getId() + ", 999999]"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.enrolled.length()").value(1))
+				.andExpect(jsonPath("$.enrolled[0]").value(testEvent.getId()));
+	}
+
+	@Test
+	@WithMockUser(username = "testuser", roles = {"USER"})
+	void checkEnrolled_rejectsTooManyIds() throws Exception {
+		String ids = LongStream.rangeClosed(1, EnrollmentService.MAX_CHECK_IDS + 1)
+				.mapToObj(String::valueOf)
+				.collect(Collectors.joining(",", "[", "]"));
+
+		mockMvc.perform(post("/api/enrollments/check")
+						.contentType(MediaType.APPLICATION_JSON)
+						.content(ids))
+				.andExpect(status().isBadRequest())
+				.andExpect(jsonPath("$.error").value("At most 500 event ids can be checked at once."));
+	}
+
 	//un-enroll user from event
 	@Test
 	@WithMockUser(username = "testuser", roles = {"USER"})
 	void unEnroll_success() throws Exception {
 		mockMvc.perform(post("/api/enrollments/{eventId}", testEvent.getId()))
 				.andExpect(status().isCreated())
-				.andExpect(jsonPath("$.user.username").value("testuser"));
+				.andExpect(jsonPath("$.userId").value(testUser.getId()));
 
 		assertTrue(enrollmentRepository.existsByUserAndEvent(testUser, testEvent));
 		mockMvc.perform(delete("/api/enrollments/{eventId}", testEvent.getId()))
@@ -390,6 +700,18 @@ class EnrollmentTests {
 				.andExpect(jsonPath("$.error").value("Enrollment not found."));
 	}
 
-
+	//the all-args constructor grows with the entity, these tests only set what they care about
+	private static Event event(Long id, String title, String description, String imageUrl,
+			LocalDateTime eventTime, boolean hidden, User owner, Integer capacity) {
+		Event event = new Event();
+		event.setId(id);
+		event.setTitle(title);
+		event.setDescription(description);
+		event.setImageUrl(imageUrl);
+		event.setEventTime(eventTime);
+		event.setHidden(hidden);
+		event.setOwner(owner);
+		event.setCapacity(capacity);
+		return event;
+	}
 }
-
@@ -1,11 +1,13 @@
 package com.standingcat.event;
 
+import com.jayway.jsonpath.JsonPath;
 import com.standingcat.event.config.TestSecurityConfig;
 import com.standingcat.event.model.Event;
 import com.standingcat.event.model.User;
 import com.standingcat.event.repository.EnrollmentRepository;
 import com.standingcat.event.repository.EventRepository;
 import com.standingcat.event.repository.UserRepository;
+import com.standingcat.event.service.EventCatalogueCache;
 import jakarta.persistence.EntityManager;
 import jakarta.transaction.Transactional;
 import org.junit.jupiter.api.BeforeEach;
@@ -14,11 +16,13 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.transaction.AfterTransaction;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PutMapping;
@@ -29,8 +33,15 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.hasItem;
 import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
 import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -44,6 +55,9 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 class EventTests {
     
 
+    @Autowired
+    private EventCatalogueCache catalogueCache;
+
     @Autowired
     private MockMvc mockMvc;
 
@@ -62,6 +76,12 @@ class EventTests {
     private User testUser;
     private Event testEvent;
 
+    //the test rolls back, so none of the after-commit evictions ran. its snapshots must not reach the next test
+    @AfterTransaction
+    void forgetCachedCatalogue() {
+        catalogueCache.evictAll();
+    }
+
     @BeforeEach
     void setup() {
         testUser = userRepository.save(new User(
@@ -72,7 +92,7 @@ class EventTests {
                 Set.of("ROLE_USER"),
                 new HashSet<>(),
                 new HashSet<>()));
-        testEvent = eventRepository.save(new Event(
+        testEvent = eventRepository.save(event(
                 null,
                 "Test Event",
                 "Description",
@@ -80,8 +100,7 @@ class EventTests {
                 LocalDateTime.now(),
                 false,
                 testUser,
-                5,
-                new HashSet<>()));
+                5));
     }
 
     //getAllEvents
@@ -111,8 +130,8 @@ class EventTests {
 
         mockMvc.perform(get("/api/events"))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$[*].title").value(org.hamcrest.Matchers.hasItem("Visible Event")))
-                .andExpect(jsonPath("$[*].hidden").value(org.hamcrest.Matchers.everyItem(org.hamcrest.Matchers.is(false))));
+                .andExpect(jsonPath("$[*].title").value(hasItem("Visible Event")))
+                .andExpect(jsonPath("$[*].hidden").value(everyItem(is(false))));
     }
     //if no events, should return empty
     @Test
@@ -127,6 +146,80 @@ class EventTests {
                 .andExpect(jsonPath("$", hasSize(0)));
     }
 
+    //keyset pagination - walks every visible event exactly once in (eventTime, id) order
+    @Test
+    @WithMockUser(username = "testuser", roles = {"USER"})
+    void getEventsPage_walksAllPagesWithCursor() throws Exception {
+        eventRepository.deleteAll();
+        for (int i = 1; i <= 3; i++) {
+            Event event = new Event();
+            event.setTitle("Paged Event " + i);
+            event.setDescription("desc");
+            event.setEventTime(LocalDateTime.of(2030, 1, i, 10, 0));
+            event.setCapacity(10);
+            event.setOwner(testUser);
+            eventRepository.save(event);
+        }
+
+        String firstPage = mockMvc.perform(get("/api/events/page").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.events", hasSize(2)))
+                .andExpect(jsonPath("$.events[0].title").value("Paged Event 1"))
+                .andExpect(jsonPath("$.events[1].title").value("Paged Event 2"))
+                .andExpect(jsonPath("$.nextCursor").isNotEmpty())
+                .andReturn().getResponse().getContentAsString();
+        String cursor = JsonPath.read(firstPage, "$.nextCursor");
+
+        mockMvc.perform(get("/api/events/page").param("limit", "2").param("cursor", cursor))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.events", hasSize(1)))
+                .andExpect(jsonPath("$.events[0].title").value("Paged Event 3"))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+    }
+
+    //without from there is no lower bound, events of any date are listed
+    @Test
+    @WithMockUser(username = "testuser", roles = {"USER"})
+    void getEventsPage_listsEventsBefore1970() throws Exception {
+        eventRepository.deleteAll();
+        Event old = new Event();
+        old.setTitle("Old Event");
+        old.setDescription("desc");
+        old.setEventTime(LocalDateTime.of(1965, 6, 1, 10, 0));
+        old.setCapacity(10);
+        old.setOwner(testUser);
+        eventRepository.save(old);
+
+        mockMvc.perform(get("/api/events/page"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.events", hasSize(1)))
+                .andExpect(jsonPath("$.events[0].title").value("Old Event"));
+    }
+
+    @Test
+    @WithMockUser(username = "testuser", roles = {"USER"})
+    void getEventsPage_hasFreeSeatsSkipsFullEvents() throws Exception {
+        Event fullEvent = new Event();
+        fullEvent.setTitle("Full Event");
+        fullEvent.setDescription("desc");
+        fullEvent.setEventTime(LocalDateTime.now().plusDays(1));
+        fullEvent.setCapacity(0);
+        fullEvent.setOwner(testUser);
+        eventRepository.save(fullEvent);
+
+        mockMvc.perform(get("/api/events/page").param("hasFreeSeats", "true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.events[*].title").value(not(hasItem("Full Event"))));
+    }
+
+    @Test
+    @WithMockUser(username = "testuser", roles = {"USER"})
+    void getEventsPage_invalidCursor() throws Exception {
+        mockMvc.perform(get("/api/events/page").param("cursor", "not-a-cursor"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Invalid cursor."));
+    }
+
     //Success - get event by id
     @Test
     @WithMockUser(username = "testuser", roles = {"USER"})
@@ -136,7 +229,56 @@ class EventTests {
                 .andExpect(jsonPath("$.id").value(testEvent.getId()))
                 .andExpect(jsonPath("$.title").value("Test Event"))
                 .andExpect(jsonPath("$.description").value("Description"))
-                .andExpect(jsonPath("$.hidden").value(false));
+                .andExpect(jsonPath("$.capacity").value(5));
+    }
+
+    @Test
+    @WithMockUser(username = "testuser", roles = {"USER"})
+    void getEventById_notModifiedWhenETagMatches() throws Exception {
+        String etag = mockMvc.perform(get("/api/events/{id}", testEvent.getId()))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/api/events/{id}", testEvent.getId()).header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", etag))
+                .andExpect(content().string(""));
+
+        mockMvc.perform(get("/api/events/{id}", testEvent.getId()).header("If-None-Match", "\"stale\""))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(testEvent.getId()));
+    }
+
+    //rows saved before the HTML was stored only have the markdown, it is rendered on the way out
+    @Test
+    @WithMockUser(username = "testuser", roles = {"USER"})
+    void getDescriptionHtml_rendersAndHonoursETag() throws Exception {
+        testEvent.setDescriptionMarkdown("# Agenda");
+        eventRepository.saveAndFlush(testEvent);
+
+        String etag = mockMvc.perform(get("/api/events/{id}/description.html", testEvent.getId()))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("<h1>Agenda</h1>")))
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/api/events/{id}/description.html", testEvent.getId()).header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+
+        mockMvc.perform(get("/api/events/{id}/description.html", testEvent.getId() + 9999))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @WithMockUser(username = "testuser", roles = {"USER"})
+    void getAllEvents_notModifiedWhenETagMatches() throws Exception {
+        String etag = mockMvc.perform(get("/api/events"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+        assertNotNull(etag);
+
+        mockMvc.perform(get("/api/events").header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
     }
 
     @Test
@@ -159,19 +301,12 @@ class EventTests {
                 new HashSet<>()
         ));
 
-        String eventJson = """
-        {
-            "title": "Admin Event",
-            "description": "Created by admin",
-            "imageUrl": "image.jpg",
-            "eventTime": "2030-01-01T10:00:00",
-            "capacity": 50
-        }
-        """;
 
-        mockMvc.perform(post("/api/events")
-                        .contentType("application/json")
-                        .content(eventJson))
+        mockMvc.perform(multipart("/api/events")
+                        .param("title", "Admin Event")
+                        .param("description", "Created by admin")
+                        .param("eventTime", "2030-01-01T10:00:00")
+                        .param("capacity", "50"))
                 .andExpect(status().isCreated())
                 .andExpect(jsonPath("$.title").value("Admin Event"))
                 .andExpect(jsonPath("$.owner.username").value("testadmin"));
@@ -195,19 +330,12 @@ class EventTests {
     void createEvent_authAdminNotFound() throws Exception {
 
 
-        String eventJson = """
-        {
-            "title": "Admin Event",
-            "description": "Created by admin",
-            "imageUrl": "image.jpg",
-            "eventTime": "2030-01-01T10:00:00",
-            "capacity": 50
-        }
-        """;
 
-        mockMvc.perform(post("/api/events")
-                        .contentType("application/json")
-                        .content(eventJson))
+        mockMvc.perform(multipart("/api/events")
+                        .param("title", "Admin Event")
+                        .param("description", "Created by admin")
+                        .param("eventTime", "2030-01-01T10:00:00")
+                        .param("capacity", "50"))
                 .andExpect(status().isUnauthorized())
                 .andExpect(jsonPath("$.error").value("Authenticated admin user not found."));
 
@@ -228,18 +356,11 @@ class EventTests {
                 new HashSet<>()
         ));
 
-        String eventJson = """
-        {
-            "description": "Created by admin",
-            "imageUrl": "image.jpg",
-            "eventTime": "thisisnotarealdatetime",
-            "capacity": 50
-        }
-        """;
 
-        mockMvc.perform(post("/api/events")
-                        .contentType("application/json")
-                        .content(eventJson))
+        mockMvc.perform(multipart("/api/events")
+                        .param("description", "Created by admin")
+                        .param("eventTime", "thisisnotarealdatetime")
+                        .param("capacity", "50"))
                 .andExpect(status().isBadRequest());
 
     }
@@ -247,19 +368,12 @@ class EventTests {
     @Test
     @WithMockUser(username = "testuser", roles = {"USER"})
     void createEvent_nonAdmin() throws Exception {
-        String eventJson = """
-        {
-            "title": "Admin Event",
-            "description": "Created by admin",
-            "imageUrl": "image.jpg",
-            "eventTime": "2030-01-01T10:00:00",
-            "capacity": 50
-        }
-        """;
 
-        mockMvc.perform(post("/api/events")
-                        .contentType("application/json")
-                        .content(eventJson))
+        mockMvc.perform(multipart("/api/events")
+                        .param("title", "Admin Event")
+                        .param("description", "Created by admin")
+                        .param("eventTime", "2030-01-01T10:00:00")
+                        .param("capacity", "50"))
                 .andExpect(status().isForbidden());
 
         assertFalse(eventRepository.existsByTitle("Admin Event"),
@@ -290,28 +404,36 @@ class EventTests {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", e.getMessage()));
             }
         }*/
-        String eventJson = """
-        {
-            "title": "Updated Event",
-            "description": "Updated Description",
-            "imageUrl": "updatedimage.jpg",
-            "eventTime": "2031-01-01T10:00:00",
-            "capacity": 51
-        }
-        """;
-        mockMvc.perform(put("/api/events/{id}", testEvent.getId())
-                .contentType("application/json")
-                .content(eventJson))
+        User testAdmin = userRepository.save(new User(
+                null,
+                "testadmin",
+                "password",
+                "admin@example.com",
+                Set.of("ROLE_ADMIN"),
+                new HashSet<>(),
+                new HashSet<>()
+        ));
+
+        //only the admin who owns the event may change it
+        testEvent.setOwner(testAdmin);
+        eventRepository.save(testEvent);
+
+        mockMvc.perform(multipart(HttpMethod.PUT, "/api/events/{id}", testEvent.getId())
+                        .param("title", "Updated Event")
+                        .param("description", "Updated Description")
+                        .param("eventTime", "2031-01-01T10:00:00")
+                        .param("capacity", "51"))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.title").value("Updated Event"))
                 .andExpect(jsonPath("$.description").value("Updated Description"))
-                .andExpect(jsonPath("$.imageUrl").value("updatedimage.jpg"))
+                .andExpect(jsonPath("$.imageUrl").value("image.jpg"))
                 .andExpect(jsonPath("$.capacity").value(51));
 
         Event updatedEvent = eventRepository.findById(testEvent.getId()).orElseThrow();
         assertEquals("Updated Event", updatedEvent.getTitle());
         assertEquals("Updated Description", updatedEvent.getDescription());
-        assertEquals("updatedimage.jpg", updatedEvent.getImageUrl());
+        //no new file was sent, so the image is left alone
+        assertEquals("image.jpg", updatedEvent.getImageUrl());
         assertEquals(51, updatedEvent.getCapacity());
         assertEquals(LocalDateTime.of(2031, 1, 1, 10, 0), updatedEvent.getEventTime());
 
@@ -322,18 +444,21 @@ class EventTests {
     @Test
     @WithMockUser(username = "testadmin", roles = {"ADMIN"})
     void updateEvent_notFound() throws Exception {
-        String eventJson = """
-        {
-            "title": "Updated Event",
-            "description": "Updated Description",
-            "imageUrl": "updatedimage.jpg",
-            "eventTime": "2031-01-01T10:00:00",
-            "capacity": 51
-        }
-        """;
-        mockMvc.perform(put("/api/events/{id}", testEvent.getId()+9999)
-                        .contentType("application/json")
-                        .content(eventJson))
+        userRepository.save(new User(
+                null,
+                "testadmin",
+                "password",
+                "admin@example.com",
+                Set.of("ROLE_ADMIN"),
+                new HashSet<>(),
+                new HashSet<>()
+        ));
+
+        mockMvc.perform(multipart(HttpMethod.PUT, "/api/events/{id}", testEvent.getId()+9999)
+                        .param("title", "Updated Event")
+                        .param("description", "Updated Description")
+                        .param("eventTime", "2031-01-01T10:00:00")
+                        .param("capacity", "51"))
                 .andExpect(status().isNotFound())
                 .andExpect(jsonPath("$.error").value("Event not found."));
 
@@ -342,18 +467,11 @@ class EventTests {
     @Test
     @WithMockUser(username = "testuser", roles = {"USER"})
     void updateEvent_notAdmins() throws Exception {
-        String eventJson = """
-        {
-            "title": "Updated Event",
-            "description": "Updated Description",
-            "imageUrl": "updatedimage.jpg",
-            "eventTime": "2031-01-01T10:00:00",
-            "capacity": 51
-        }
-        """;
-        mockMvc.perform(put("/api/events/{id}", testEvent.getId())
-                        .contentType("application/json")
-                        .content(eventJson))
+        mockMvc.perform(multipart(HttpMethod.PUT, "/api/events/{id}", testEvent.getId())
+                        .param("title", "Updated Event")
+                        .param("description", "Updated Description")
+                        .param("eventTime", "2031-01-01T10:00:00")
+                        .param("capacity", "51"))
                 .andExpect(status().isForbidden());
         Event updatedEvent = eventRepository.findById(testEvent.getId()).orElseThrow();
         assertEquals(testEvent.getTitle(), updatedEvent.getTitle());
@@ -380,19 +498,12 @@ class EventTests {
                 new HashSet<>()
         ));
 
-        String eventJson = """
-        {
-            "title": "Admin Event",
-            "description": "Created by admin",
-            "imageUrl": "image.jpg",
-            "eventTime": "2030-01-01T10:00:00",
-            "capacity": 50
-        }
-        """;
 
-        mockMvc.perform(post("/api/events")
-                        .contentType("application/json")
-                        .content(eventJson))
+        mockMvc.perform(multipart("/api/events")
+                        .param("title", "Admin Event")
+                        .param("description", "Created by admin")
+                        .param("eventTime", "2030-01-01T10:00:00")
+                        .param("capacity", "50"))
                 .andExpect(status().isCreated())
                 .andExpect(jsonPath("$.title").value("Admin Event"))
                 .andExpect(jsonPath("$.owner.username").value("testadmin"));
@@ -458,9 +569,10 @@ class EventTests {
     @Test
     @WithMockUser(username = "admin", roles = {"ADMIN"})
     void hideEvent_success() throws Exception {
+        //the response is the public view, which doesn't carry the flag, the row is checked below
         mockMvc.perform(patch("/api/events/{id}/hide", testEvent.getId()))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$.hidden").value(true));
+                .andExpect(jsonPath("$.id").value(testEvent.getId()));
 
         entityManager.flush();
         entityManager.clear();
@@ -496,7 +608,7 @@ class EventTests {
                 new HashSet<>(),
                 new HashSet<>()
         ));
-        Event hiddenEvent = eventRepository.save(new Event(
+        Event hiddenEvent = eventRepository.save(event(
                 null,
                 "Test Event",
                 "Description",
@@ -504,8 +616,7 @@ class EventTests {
                 LocalDateTime.now(),
                 true,
                 testAdmin,
-                5,
-                new HashSet<>()));
+                5));
 
         mockMvc.perform(patch("/api/events/{id}/unhide", hiddenEvent.getId()))
                 .andExpect(status().isOk())
@@ -530,7 +641,7 @@ class EventTests {
     @Test
     @WithMockUser(username = "user", roles = {"USER"})
     void unHideEvent_forbidden() throws Exception {
-        Event hiddenEvent = eventRepository.save(new Event(
+        Event hiddenEvent = eventRepository.save(event(
                 null,
                 "Test Event",
                 "Description",
@@ -538,14 +649,24 @@ class EventTests {
                 LocalDateTime.now(),
                 true,
                 testUser,
-                5,
-                new HashSet<>()));
+                5));
 
         mockMvc.perform(patch("/api/events/{id}/unhide", testEvent.getId()))
                 .andExpect(status().isForbidden());
     }
 
-
-
-
+    //the all-args constructor grows with the entity, these tests only set what they care about
+    private static Event event(Long id, String title, String description, String imageUrl,
+                               LocalDateTime eventTime, boolean hidden, User owner, Integer capacity) {
+        Event event = new Event();
+        event.setId(id);
+        event.setTitle(title);
+        event.setDescription(description);
+        event.setImageUrl(imageUrl);
+        event.setEventTime(eventTime);
+        event.setHidden(hidden);
+        event.setOwner(owner);
+        event.setCapacity(capacity);
+        return event;
+    }
 }
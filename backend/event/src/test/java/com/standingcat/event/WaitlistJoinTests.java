@@ -0,0 +1,114 @@
+package com.standingcat.event;
+
+import com.standingcat.event.config.TestSecurityConfig;
+import com.standingcat.event.dto.WaitlistResponse;
+import com.standingcat.event.model.Event;
+import com.standingcat.event.model.User;
+import com.standingcat.event.repository.EventRepository;
+import com.standingcat.event.repository.UserRepository;
+import com.standingcat.event.service.EnrollmentService;
+import com.standingcat.event.service.SeatCounter;
+import com.standingcat.event.service.WaitlistService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+//No @Transactional here: the joins have to commit for a second one to run into the first one's row.
+//The rows are removed again after each test.
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@Import(TestSecurityConfig.class)
+class WaitlistJoinTests {
+    static final int ROUNDS = 20;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    @Autowired
+    private EnrollmentService enrollmentService;
+
+    @Autowired
+    private WaitlistService waitlistService;
+
+    @Autowired
+    private SeatCounter seatCounter;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private User owner;
+    private User waiting;
+    private Event full;
+
+    @BeforeEach
+    void setup() {
+        owner = userRepository.save(new User(null, "joinowner", "password", "joinowner@example.com",
+                Set.of("ROLE_USER"), null, new HashSet<>()));
+        waiting = userRepository.save(new User(null, "joinwaiting", "password", "joinwaiting@example.com",
+                Set.of("ROLE_USER"), null, new HashSet<>()));
+        Event event = new Event();
+        event.setTitle("Full Event");
+        event.setDescription("Description");
+        event.setEventTime(LocalDateTime.of(2030, 1, 1, 10, 0));
+        event.setOwner(owner);
+        event.setCapacity(1);
+        full = eventRepository.save(event);
+        enrollmentService.enrollUserToEvent(owner.getId(), full.getId());
+    }
+
+    //events, enrollments and waitlist entries go with their users through the foreign keys
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.update("DELETE FROM email_outbox WHERE recipient IN (?, ?)", owner.getEmail(), waiting.getEmail());
+        jdbcTemplate.update("DELETE FROM app_user WHERE id IN (?, ?)", owner.getId(), waiting.getId());
+    }
+
+    //the owner's committed enrollment filled the only seat, the counter learnt that from the claim's own read
+    @Test
+    void first_committed_claim_primes_the_seat_counter() {
+        assertTrue(seatCounter.tryReserve(full.getId()).isSoldOut());
+    }
+
+    //a double click on "join the waitlist" gives one place in line, not an error
+    @Test
+    void concurrent_joins_by_the_same_user_share_one_entry() throws Exception {
+        try (ExecutorService threads = Executors.newFixedThreadPool(2)) {
+            for (int round = 0; round < ROUNDS; round++) {
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<WaitlistResponse>> joins = List.of(
+                        threads.submit(() -> { start.await(); return waitlistService.join(waiting.getId(), full.getId()); }),
+                        threads.submit(() -> { start.await(); return waitlistService.join(waiting.getId(), full.getId()); }));
+                start.countDown();
+                for (Future<WaitlistResponse> join : joins) {
+                    WaitlistResponse response = join.get();
+                    assertFalse(response.isEnrolled());
+                    assertEquals(1, response.getPosition());
+                }
+                waitlistService.leave(waiting.getId(), full.getId());
+            }
+        }
+    }
+}
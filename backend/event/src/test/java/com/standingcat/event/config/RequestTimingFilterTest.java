@@ -0,0 +1,46 @@
+package com.standingcat.event.config;
+
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestTimingFilterTest {
+
+    @Test
+    void counts_statements_of_the_request_and_tags_it_with_an_id() throws Exception {
+        SqlCountingStatementInspector inspector = new SqlCountingStatementInspector();
+        AtomicInteger seenInside = new AtomicInteger();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        FilterChain chain = (request, res) -> {
+            RequestTiming.handlerStarted();
+            inspector.inspect("select 1");
+            inspector.inspect("select 2");
+            RequestTiming.handlerFinished();
+            seenInside.incrementAndGet();
+        };
+        new RequestTimingFilter().doFilter(new MockHttpServletRequest("GET", "/api/events"), response, chain);
+
+        assertEquals(1, seenInside.get());
+        assertNotNull(response.getHeader("X-Request-Id"));
+        //the record is gone once the request is done, a stray statement afterwards is not counted anywhere
+        assertDoesNotThrow(() -> inspector.inspect("select 3"));
+    }
+
+    @Test
+    void keeps_a_caller_supplied_request_id() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/events");
+        request.addHeader("X-Request-Id", "abc-123");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        new RequestTimingFilter().doFilter(request, response, new MockFilterChain());
+
+        assertEquals("abc-123", response.getHeader("X-Request-Id"));
+    }
+}
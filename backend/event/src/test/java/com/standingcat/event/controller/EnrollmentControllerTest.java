@@ -5,10 +5,15 @@ import com.standingcat.event.model.Enrollment;
 import com.standingcat.event.model.Event;
 import com.standingcat.event.model.User;
 import com.standingcat.event.repository.UserRepository;
+import com.standingcat.event.security.jwt.JwtUtil;
+import com.standingcat.event.security.jwt.PrincipalCache;
 import com.standingcat.event.service.EmailService;
+import com.standingcat.event.service.EnrollmentTransferService;
+import com.standingcat.event.service.WaitlistService;
 import com.standingcat.event.service.EnrollmentService;
 import com.standingcat.event.service.EventService;
 import com.standingcat.event.service.UserService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -33,7 +38,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(EnrollmentController.class)
-@Import(SecurityConfig.class)
+@Import({SecurityConfig.class, SimpleMeterRegistry.class})
 public class EnrollmentControllerTest {
     @Autowired
     private MockMvc mockMvc;
@@ -45,6 +50,13 @@ public class EnrollmentControllerTest {
     @MockitoBean
     private EnrollmentService enrollmentService;
 
+    //the JWT filter in SecurityConfig needs these, @WithMockUser requests never reach them
+    @MockitoBean
+    private JwtUtil jwtUtil;
+
+    @MockitoBean
+    private PrincipalCache principalCache;
+
     @MockitoBean
     private UserService userService;
 
@@ -54,6 +66,12 @@ public class EnrollmentControllerTest {
     @MockitoBean
     private EmailService emailService;
 
+    @MockitoBean
+    private EnrollmentTransferService enrollmentTransferService;
+
+    @MockitoBean
+    private WaitlistService waitlistService;
+
     private User testUser;
     private Event testEvent;
     private Enrollment testEnrollment;
@@ -62,7 +80,7 @@ public class EnrollmentControllerTest {
     void setUp() {
         // Set up common objects for our tests.
         testUser = new User(1L, "testuser", "password", "test@example.com", Set.of("ROLE_USER"), null, null);
-        testEvent = new Event(200L, "Test Event", "Description", "image.jpg", LocalDateTime.now(), false, testUser, 5, new HashSet<>());
+        testEvent = event(200L, "Test Event", "Description", "image.jpg", LocalDateTime.now(), false, testUser, 5);
         testEnrollment = new Enrollment(300L, LocalDateTime.now(), testUser, testEvent);
 
         // Mock the findByUsername method for Spring Security to work.
@@ -79,7 +97,8 @@ public class EnrollmentControllerTest {
         mockMvc.perform(post("/api/enrollments/{eventId}", testEvent.getId()))
                 .andExpect(status().isCreated()) // 3. Assert - Check the response status
                 .andExpect(jsonPath("$.id").value(300L)) // Assert the JSON content
-                .andExpect(jsonPath("$.user.username").value("testuser"));
+                .andExpect(jsonPath("$.userId").value(1L))
+                .andExpect(jsonPath("$.eventId").value(200L));
 
         verify(enrollmentService, times(1)).enrollUserToEvent(eq(testUser.getId()), eq(testEvent.getId()));
     }
@@ -97,4 +116,18 @@ public class EnrollmentControllerTest {
     }
     */
 
+    //the all-args constructor grows with the entity, these tests only set what they care about
+    private static Event event(Long id, String title, String description, String imageUrl,
+                               LocalDateTime eventTime, boolean hidden, User owner, Integer capacity) {
+        Event event = new Event();
+        event.setId(id);
+        event.setTitle(title);
+        event.setDescription(description);
+        event.setImageUrl(imageUrl);
+        event.setEventTime(eventTime);
+        event.setHidden(hidden);
+        event.setOwner(owner);
+        event.setCapacity(capacity);
+        return event;
+    }
 }
@@ -0,0 +1,216 @@
+package com.standingcat.event.load;
+
+import com.standingcat.event.model.Event;
+import com.standingcat.event.model.User;
+import com.standingcat.event.repository.EventRepository;
+import com.standingcat.event.repository.UserRepository;
+import com.standingcat.event.security.jwt.JwtUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+//A popular event opening: USERS people hit enroll on an event with CAPACITY seats at the same moment, through the
+//real filter chain (JWT in the Authorization header) and EnrollmentController. Some of them double-click, some change
+//their mind and un-enroll straight after getting in, which frees seats for the rest of the rush.
+//Prints throughput and latency percentiles, and fails on overbooking or a seat count that drifted from the rows.
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "spring.datasource.url=jdbc:h2:mem:enrollment-rush;DB_CLOSE_DELAY=-1")
+class EnrollmentRushLoadTest {
+    static final int CAPACITY = 100;
+    static final int USERS = 2000;
+    //every DOUBLE_CLICK-th user sends two enrolls at once, every UN_ENROLL-th user who gets in leaves again
+    static final int DOUBLE_CLICK = 10;
+    static final int UN_ENROLL = 4;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    private Event event;
+    private final List<String> tokens = new ArrayList<>();
+
+    @BeforeEach
+    void seed() {
+        List<User> users = new ArrayList<>(USERS);
+        for (int i = 0; i < USERS; i++) {
+            User user = new User();
+            user.setUsername("rush" + i);
+            user.setPassword("unused");
+            user.setEmail("rush" + i + "@example.com");
+            user.setRoles(Set.of("ROLE_USER"));
+            users.add(user);
+        }
+        userRepository.saveAll(users);
+        for (User user : users) {
+            tokens.add(jwtUtil.generateToken(org.springframework.security.core.userdetails.User
+                    .withUsername(user.getUsername())
+                    .password("")
+                    .authorities("ROLE_USER")
+                    .build()));
+        }
+
+        Event popular = new Event();
+        popular.setTitle("Popular event");
+        popular.setDescription("Opens at noon");
+        popular.setEventTime(LocalDateTime.now().plusDays(7));
+        popular.setOwner(users.get(0));
+        popular.setCapacity(CAPACITY);
+        event = eventRepository.save(popular);
+    }
+
+    record Call(String method, int status, long nanos, String body) {
+    }
+
+    @Test
+    void enrollment_rush() throws Exception {
+        ConcurrentLinkedQueue<Call> calls = new ConcurrentLinkedQueue<>();
+        AtomicInteger connectionErrors = new AtomicInteger();
+        Duration elapsed;
+
+        try (ExecutorService clientThreads = Executors.newVirtualThreadPerTaskExecutor()) {
+            HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .executor(clientThreads)
+                    .connectTimeout(Duration.ofSeconds(10))
+                    .build();
+            URI enrollUri = URI.create("http://localhost:" + port + "/api/enrollments/" + event.getId());
+
+            //warm up the connector, JIT, connection pool and JWT path on a request that changes nothing
+            client.send(HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/events/" + event.getId())).build(),
+                    HttpResponse.BodyHandlers.discarding());
+
+            //everyone waits on the latch so the requests really land together
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> users = new ArrayList<>(USERS);
+            for (int i = 0; i < USERS; i++) {
+                int user = i;
+                users.add(clientThreads.submit(() -> {
+                    start.await();
+                    HttpRequest enroll = request(enrollUri, tokens.get(user)).POST(HttpRequest.BodyPublishers.noBody()).build();
+                    List<Future<Call>> clicks = new ArrayList<>();
+                    clicks.add(clientThreads.submit(() -> send(client, enroll)));
+                    if (user % DOUBLE_CLICK == 0) {
+                        clicks.add(clientThreads.submit(() -> send(client, enroll)));
+                    }
+                    boolean enrolled = false;
+                    for (Future<Call> click : clicks) {
+                        Call call = click.get();
+                        calls.add(call);
+                        enrolled |= call.status() == 201;
+                    }
+                    if (enrolled && user % UN_ENROLL == 0) {
+                        calls.add(send(client, request(enrollUri, tokens.get(user)).DELETE().build()));
+                    }
+                    return null;
+                }));
+            }
+
+            long startedAt = System.nanoTime();
+            start.countDown();
+            for (Future<?> user : users) {
+                try {
+                    user.get();
+                } catch (Exception e) {
+                    connectionErrors.incrementAndGet();
+                }
+            }
+            elapsed = Duration.ofNanos(System.nanoTime() - startedAt);
+        }
+
+        Integer enrolledCount = jdbcTemplate.queryForObject(
+                "SELECT enrolled_count FROM app_event WHERE id = ?", Integer.class, event.getId());
+        Integer rows = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM enrollment WHERE event_id = ?", Integer.class, event.getId());
+        long uniqueViolations = calls.stream().filter(EnrollmentRushLoadTest::isUniqueViolation).count();
+        long serverErrors = calls.stream().filter(call -> call.status() >= 500).count();
+
+        report(calls, elapsed, enrolledCount, rows, uniqueViolations, serverErrors, connectionErrors.get());
+
+        assertEquals(0, connectionErrors.get(), "requests failed without a response");
+        assertTrue(rows <= CAPACITY, "overbooked: " + rows + " enrollments for " + CAPACITY + " seats");
+        assertEquals(rows, enrolledCount, "enrolled_count drifted from the enrollment rows");
+        assertEquals(0, serverErrors, "server errors during the rush");
+    }
+
+    private static HttpRequest.Builder request(URI uri, String token) {
+        return HttpRequest.newBuilder(uri)
+                .header("Authorization", "Bearer " + token)
+                .timeout(Duration.ofSeconds(60));
+    }
+
+    private static Call send(HttpClient client, HttpRequest request) throws Exception {
+        long sent = System.nanoTime();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        return new Call(request.method(), response.statusCode(), System.nanoTime() - sent, response.body());
+    }
+
+    //a double click whose (user_id, event_id) unique key violation came back raw instead of as "already enrolled"
+    private static boolean isUniqueViolation(Call call) {
+        String body = call.body() == null ? "" : call.body().toLowerCase(Locale.ROOT);
+        return call.status() != 201 && (body.contains("constraint") || body.contains("unique") || body.contains("duplicate key"));
+    }
+
+    private static void report(ConcurrentLinkedQueue<Call> calls, Duration elapsed, int enrolledCount, int rows,
+                               long uniqueViolations, long serverErrors, int connectionErrors) {
+        Map<String, Integer> statuses = new ConcurrentHashMap<>();
+        calls.forEach(call -> statuses.merge(call.method() + " " + call.status(), 1, Integer::sum));
+        long[] latencies = calls.stream().mapToLong(Call::nanos).sorted().toArray();
+        double seconds = Math.max(elapsed.toNanos(), 1) / 1e9;
+
+        System.out.printf("%s: %d users, %d requests in %d ms (%.0f req/s)%n",
+                EnrollmentRushLoadTest.class.getSimpleName(), USERS, calls.size(), elapsed.toMillis(), calls.size() / seconds);
+        System.out.printf("  latency p50 %.1f ms, p99 %.1f ms, p999 %.1f ms, max %.1f ms%n",
+                percentileMillis(latencies, 0.50), percentileMillis(latencies, 0.99),
+                percentileMillis(latencies, 0.999), percentileMillis(latencies, 1.0));
+        System.out.printf("  responses %s%n", statuses);
+        System.out.printf("  capacity %d, enrollments %d, enrolled_count %d, overbooked %d%n",
+                CAPACITY, rows, enrolledCount, Math.max(0, rows - CAPACITY));
+        System.out.printf("  unique-constraint violations %d, server errors %d, no response %d%n",
+                uniqueViolations, serverErrors, connectionErrors);
+    }
+
+    private static double percentileMillis(long[] sortedNanos, double percentile) {
+        if (sortedNanos.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.min(sortedNanos.length - 1, Math.ceil(percentile * sortedNanos.length) - 1);
+        return sortedNanos[Math.max(0, index)] / 1e6;
+    }
+}
@@ -0,0 +1,20 @@
+package com.standingcat.event.load;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.context.TestPropertySource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestPropertySource(properties = "spring.threads.virtual.enabled=false")
+class PlatformThreadLoadTest extends ThreadModeLoadTest {
+
+    @Test
+    void io_bound_spike() throws Exception {
+        Result result = burst();
+
+        assertNoFailures(result);
+        //every request holds a Tomcat thread while it waits, so the burst can't beat the pool
+        assertTrue(result.elapsed().compareTo(PLATFORM_FLOOR) >= 0,
+                "took " + result.elapsed().toMillis() + " ms, expected at least " + PLATFORM_FLOOR.toMillis());
+    }
+}
@@ -0,0 +1,112 @@
+package com.standingcat.event.load;
+
+import com.standingcat.event.repository.EventRepository;
+import org.junit.jupiter.api.Tag;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Import;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+//A registration-style spike against an endpoint that spends most of its time waiting on I/O.
+//Run both subclasses with -Pload and compare the logged numbers: with 200 platform threads the burst
+//has to go through in waves of 200, with virtual threads it is bounded by the I/O wait, not the pool.
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "server.tomcat.threads.max=" + ThreadModeLoadTest.TOMCAT_THREADS)
+@Import(ThreadModeLoadTest.IoProbeConfig.class)
+abstract class ThreadModeLoadTest {
+    private static final Logger log = LoggerFactory.getLogger(ThreadModeLoadTest.class);
+
+    static final int TOMCAT_THREADS = 200;
+    static final int REQUESTS = 2000;
+    static final Duration IO_WAIT = Duration.ofMillis(100);
+
+    //the fewest waves a 200-thread pool needs for the whole burst
+    static final Duration PLATFORM_FLOOR = IO_WAIT.multipliedBy(REQUESTS / TOMCAT_THREADS);
+
+    @LocalServerPort
+    private int port;
+
+    @TestConfiguration
+    static class IoProbeConfig {
+        //GET /api/events/{id} is public, so this literal path needs no token. stands in for a slow downstream call
+        @RestController
+        static class IoProbeController {
+            @Autowired
+            private EventRepository eventRepository;
+
+            @GetMapping("/api/events/io-probe")
+            public long probe() throws InterruptedException {
+                Thread.sleep(IO_WAIT);
+                return eventRepository.count();
+            }
+        }
+    }
+
+    record Result(Duration elapsed, long p50Millis, long p99Millis, long failures) {
+    }
+
+    Result burst() throws Exception {
+        try (ExecutorService clientThreads = Executors.newVirtualThreadPerTaskExecutor()) {
+            HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .executor(clientThreads)
+                    .connectTimeout(Duration.ofSeconds(10))
+                    .build();
+            HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/events/io-probe"))
+                    .timeout(Duration.ofSeconds(60))
+                    .build();
+
+            //warm up the connector, JIT and connection pool so the burst measures queueing, not startup
+            client.send(request, HttpResponse.BodyHandlers.discarding());
+
+            long start = System.nanoTime();
+            List<CompletableFuture<Long>> calls = new ArrayList<>(REQUESTS);
+            for (int i = 0; i < REQUESTS; i++) {
+                long sent = System.nanoTime();
+                calls.add(client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                        .thenApply(response -> response.statusCode() == 200 ? System.nanoTime() - sent : -1L));
+            }
+            long[] latencies = calls.stream().map(CompletableFuture::join).mapToLong(Long::longValue).toArray();
+            Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+            long failures = Arrays.stream(latencies).filter(latency -> latency < 0).count();
+            long[] ok = Arrays.stream(latencies).filter(latency -> latency >= 0).sorted().toArray();
+            Result result = new Result(elapsed, percentileMillis(ok, 0.50), percentileMillis(ok, 0.99), failures);
+            log.info("{}: {} requests in {} ms, p50 {} ms, p99 {} ms, {} failed",
+                    getClass().getSimpleName(), REQUESTS, elapsed.toMillis(), result.p50Millis(), result.p99Millis(), failures);
+            return result;
+        }
+    }
+
+    private static long percentileMillis(long[] sortedNanos, double percentile) {
+        if (sortedNanos.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.min(sortedNanos.length - 1, Math.ceil(percentile * sortedNanos.length) - 1);
+        return Duration.ofNanos(sortedNanos[Math.max(0, index)]).toMillis();
+    }
+
+    static void assertNoFailures(Result result) {
+        assertEquals(0, result.failures(), "requests failed during the spike");
+    }
+}
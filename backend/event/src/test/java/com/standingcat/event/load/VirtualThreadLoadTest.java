@@ -0,0 +1,20 @@
+package com.standingcat.event.load;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.context.TestPropertySource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestPropertySource(properties = "spring.threads.virtual.enabled=true")
+class VirtualThreadLoadTest extends ThreadModeLoadTest {
+
+    @Test
+    void io_bound_spike() throws Exception {
+        Result result = burst();
+
+        assertNoFailures(result);
+        //waiting requests park their virtual thread, so the 200 thread limit no longer sets the pace
+        assertTrue(result.elapsed().compareTo(PLATFORM_FLOOR) < 0,
+                "took " + result.elapsed().toMillis() + " ms, the platform pool needs at least " + PLATFORM_FLOOR.toMillis());
+    }
+}
@@ -0,0 +1,98 @@
+package com.standingcat.event.security;
+
+import com.standingcat.event.exception.PasswordHashingBusyException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoundedPasswordEncoderTest {
+
+    //stands in for BCrypt, encode blocks until released so the pool can be filled on purpose
+    private static class BlockingEncoder implements PasswordEncoder {
+        final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public String encode(CharSequence rawPassword) {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "hashed:" + rawPassword;
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            return ("hashed:" + rawPassword).equals(encodedPassword);
+        }
+    }
+
+    @Test
+    void hashing_runs_on_the_pool() {
+        try (BoundedPasswordEncoder encoder = new BoundedPasswordEncoder(new PlainEncoder(), 1, 1,
+                Duration.ofSeconds(5), new SimpleMeterRegistry())) {
+            assertTrue(encoder.matches("secret", encoder.encode("secret")));
+            assertFalse(encoder.matches("wrong", encoder.encode("secret")));
+        }
+    }
+
+    @Test
+    void full_queue_is_rejected_straight_away() throws Exception {
+        BlockingEncoder blocking = new BlockingEncoder();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        try (BoundedPasswordEncoder encoder = new BoundedPasswordEncoder(blocking, 1, 1,
+                Duration.ofSeconds(10), registry)) {
+            //one running, one queued
+            CompletableFuture<String> running = CompletableFuture.supplyAsync(() -> encoder.encode("a"));
+            CompletableFuture<String> queued = CompletableFuture.supplyAsync(() -> encoder.encode("b"));
+            waitUntilQueued(registry);
+
+            long start = System.nanoTime();
+            assertThrows(PasswordHashingBusyException.class, () -> encoder.encode("c"));
+            assertTrue(Duration.ofNanos(System.nanoTime() - start).compareTo(Duration.ofSeconds(1)) < 0,
+                    "rejection should not wait for the pool");
+
+            blocking.release.countDown();
+            assertEquals("hashed:a", running.get(5, TimeUnit.SECONDS));
+            assertEquals("hashed:b", queued.get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void waiting_too_long_gives_up() {
+        BlockingEncoder blocking = new BlockingEncoder();
+        try (BoundedPasswordEncoder encoder = new BoundedPasswordEncoder(blocking, 1, 10,
+                Duration.ofMillis(100), new SimpleMeterRegistry())) {
+            assertThrows(PasswordHashingBusyException.class, () -> encoder.encode("slow"));
+            blocking.release.countDown();
+        }
+    }
+
+    //the executor's own metrics say when one task is running and one is waiting
+    private static void waitUntilQueued(SimpleMeterRegistry registry) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (registry.get("executor.queued").tag("name", "password.hashing").gauge().value() < 1) {
+            assertTrue(System.nanoTime() < deadline, "second task never queued");
+            Thread.sleep(10);
+        }
+    }
+
+    private static class PlainEncoder implements PasswordEncoder {
+        @Override
+        public String encode(CharSequence rawPassword) {
+            return "hashed:" + rawPassword;
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            return ("hashed:" + rawPassword).equals(encodedPassword);
+        }
+    }
+}
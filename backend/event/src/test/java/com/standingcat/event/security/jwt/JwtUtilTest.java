@@ -0,0 +1,82 @@
+package com.standingcat.event.security.jwt;
+
+import com.standingcat.event.security.AuthenticatedUser;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtUtilTest {
+    private static final String SECRET = "c3RhbmRpbmdjYXQtZXZlbnQtdGVzdC1zZWNyZXQta2V5LTMyYnl0ZXMhIQ==";
+
+    private final UserDetails alice = User.withUsername("alice").password("").authorities("ROLE_USER").build();
+
+    @Test
+    void verify_returns_subject_roles_and_expiry() {
+        JwtUtil jwtUtil = new JwtUtil(SECRET, 60_000, 100);
+        String token = jwtUtil.generateToken(alice);
+
+        VerifiedToken verified = jwtUtil.verify(token).orElseThrow();
+
+        assertEquals("alice", verified.getUsername());
+        assertEquals(List.of("ROLE_USER"), verified.getRoles());
+        assertTrue(jwtUtil.validateToken(token, alice));
+    }
+
+    @Test
+    void user_id_travels_in_the_token_when_the_principal_has_one() {
+        JwtUtil jwtUtil = new JwtUtil(SECRET, 60_000, 100);
+        UserDetails withId = new AuthenticatedUser(42L, "alice", "", alice.getAuthorities());
+
+        assertEquals(42L, jwtUtil.verify(jwtUtil.generateToken(withId)).orElseThrow().getUserId());
+        assertNull(jwtUtil.verify(jwtUtil.generateToken(alice)).orElseThrow().getUserId());
+    }
+
+    @Test
+    void cached_and_uncached_agree() {
+        JwtUtil cached = new JwtUtil(SECRET, 60_000, 100);
+        JwtUtil uncached = new JwtUtil(SECRET, 60_000, 0);
+        String token = cached.generateToken(alice);
+
+        assertEquals(uncached.verify(token), cached.verify(token));
+        assertEquals(uncached.verify(token), cached.verify(token));
+    }
+
+    @Test
+    void expired_tampered_and_garbage_tokens_are_rejected() {
+        JwtUtil jwtUtil = new JwtUtil(SECRET, -1_000, 100);
+        String expired = jwtUtil.generateToken(alice);
+        String valid = new JwtUtil(SECRET, 60_000, 100).generateToken(alice);
+        String tampered = valid.substring(0, valid.length() - 2) + (valid.endsWith("A") ? "BB" : "AA");
+
+        assertTrue(jwtUtil.verify(expired).isEmpty());
+        assertTrue(jwtUtil.verify(tampered).isEmpty());
+        assertTrue(jwtUtil.verify("not-a-jwt").isEmpty());
+        assertTrue(jwtUtil.verify("").isEmpty());
+        assertThrows(JwtException.class, () -> jwtUtil.extractUsername("not-a-jwt"));
+        assertThrows(JwtException.class, () -> jwtUtil.extractUsername(expired));
+    }
+
+    @Test
+    void legacy_authority_objects_are_read_as_role_names() {
+        JwtUtil jwtUtil = new JwtUtil(SECRET, 60_000, 100);
+        String legacy = Jwts.builder()
+                .setSubject("alice")
+                .claim("roles", List.of(Map.of("authority", "ROLE_ADMIN")))
+                .setExpiration(new Date(System.currentTimeMillis() + 60_000))
+                .signWith(Keys.hmacShaKeyFor(Decoders.BASE64.decode(SECRET)), SignatureAlgorithm.HS256)
+                .compact();
+
+        assertEquals(List.of("ROLE_ADMIN"), jwtUtil.extractRoles(legacy));
+    }
+}
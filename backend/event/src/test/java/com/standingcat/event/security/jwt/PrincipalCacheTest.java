@@ -0,0 +1,63 @@
+package com.standingcat.event.security.jwt;
+
+import com.standingcat.event.model.User;
+import com.standingcat.event.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PrincipalCacheTest {
+    @Mock
+    private UserRepository userRepository;
+
+    private User userWithRoles(String... roles) {
+        User user = new User();
+        user.setUsername("cached");
+        user.setRoles(Set.of(roles));
+        return user;
+    }
+
+    @Test
+    void roles_are_loaded_once() {
+        PrincipalCache cache = new PrincipalCache(userRepository, 100, Duration.ofMinutes(5));
+        when(userRepository.findByUsername("cached")).thenReturn(Optional.of(userWithRoles("ROLE_USER")));
+
+        assertEquals(Set.of("ROLE_USER"), cache.grantedRoles("cached").orElseThrow());
+        assertEquals(Set.of("ROLE_USER"), cache.grantedRoles("cached").orElseThrow());
+
+        verify(userRepository, times(1)).findByUsername("cached");
+    }
+
+    @Test
+    void revoked_role_is_gone_after_evict() {
+        PrincipalCache cache = new PrincipalCache(userRepository, 100, Duration.ofMinutes(5));
+        when(userRepository.findByUsername("cached"))
+                .thenReturn(Optional.of(userWithRoles("ROLE_USER", "ROLE_ADMIN")))
+                .thenReturn(Optional.of(userWithRoles("ROLE_USER")));
+
+        assertTrue(cache.grantedRoles("cached").orElseThrow().contains("ROLE_ADMIN"));
+        cache.evict("cached");
+
+        assertFalse(cache.grantedRoles("cached").orElseThrow().contains("ROLE_ADMIN"));
+    }
+
+    @Test
+    void missing_user_is_not_cached() {
+        PrincipalCache cache = new PrincipalCache(userRepository, 100, Duration.ofMinutes(5));
+        when(userRepository.findByUsername("ghost")).thenReturn(Optional.empty());
+
+        assertTrue(cache.grantedRoles("ghost").isEmpty());
+        assertTrue(cache.grantedRoles("ghost").isEmpty());
+
+        verify(userRepository, times(2)).findByUsername("ghost");
+    }
+}
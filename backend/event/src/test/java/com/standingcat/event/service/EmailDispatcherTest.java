@@ -0,0 +1,173 @@
+package com.standingcat.event.service;
+
+import com.standingcat.event.model.OutboundEmail;
+import com.standingcat.event.repository.OutboundEmailRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class EmailDispatcherTest {
+    @Mock
+    private JavaMailSender mailSender;
+    @Mock
+    private OutboundEmailRepository outboundEmailRepository;
+
+    private EmailDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        dispatcher = new EmailDispatcher(mailSender, outboundEmailRepository,
+                new TransactionTemplate(mock(PlatformTransactionManager.class)), new SimpleMeterRegistry(),
+                "noreply@test", 2, 5, 3, Duration.ofSeconds(10), Duration.ofMinutes(1), Duration.ofMinutes(5));
+    }
+
+    private OutboundEmail pending(long id, String to) {
+        OutboundEmail email = new OutboundEmail();
+        email.setId(id);
+        email.setRecipient(to);
+        email.setSubject("Event Registration Confirmation");
+        email.setBody("Your registration to Test has been confirmed.");
+        email.setCreatedAt(LocalDateTime.now());
+        email.setNextAttemptAt(LocalDateTime.now());
+        return email;
+    }
+
+    @Test
+    void batch_is_sent_in_one_call_and_marked_sent() {
+        OutboundEmail a = pending(1, "a@example.com");
+        when(outboundEmailRepository.findDue(any(), any())).thenReturn(List.of(a));
+
+        dispatcher.dispatch();
+
+        ArgumentCaptor<SimpleMailMessage[]> sent = ArgumentCaptor.forClass(SimpleMailMessage[].class);
+        verify(mailSender, times(1)).send(sent.capture());
+        assertEquals("a@example.com", sent.getValue()[0].getTo()[0]);
+        assertEquals(OutboundEmail.Status.SENT, a.getStatus());
+        assertNotNull(a.getSentAt());
+    }
+
+    @Test
+    void full_batches_keep_draining() {
+        when(outboundEmailRepository.findDue(any(), any()))
+                .thenReturn(List.of(pending(1, "a@example.com"), pending(2, "b@example.com")))
+                .thenReturn(List.of(pending(3, "c@example.com")));
+
+        dispatcher.dispatch();
+
+        verify(mailSender, times(2)).send(any(SimpleMailMessage[].class));
+    }
+
+    @Test
+    void partial_failure_retries_only_the_failed_email_with_backoff() {
+        OutboundEmail a = pending(1, "a@example.com");
+        OutboundEmail b = pending(2, "b@example.com");
+        //b is backed off after the first batch, so the outbox has nothing due on the next poll
+        when(outboundEmailRepository.findDue(any(), any())).thenReturn(List.of(a, b), List.of());
+        doAnswer(invocation -> {
+            SimpleMailMessage second = invocation.getArgument(1);
+            SimpleMailMessage rejected = second.getTo()[0].equals("b@example.com") ? second : invocation.getArgument(0);
+            throw new MailSendException(Map.of(rejected, new RuntimeException("mailbox unavailable")));
+        }).when(mailSender).send(any(SimpleMailMessage[].class));
+
+        LocalDateTime before = LocalDateTime.now();
+        dispatcher.dispatch();
+
+        assertEquals(OutboundEmail.Status.SENT, a.getStatus());
+        assertEquals(OutboundEmail.Status.PENDING, b.getStatus());
+        assertEquals(1, b.getAttempts());
+        assertEquals("mailbox unavailable", b.getLastError());
+        assertFalse(b.getNextAttemptAt().isBefore(before.plusSeconds(10)));
+    }
+
+    //the rows are pushed past the send before it starts, a second sender doesn't find them due
+    @Test
+    void batch_is_claimed_before_sending() {
+        OutboundEmail a = pending(1, "a@example.com");
+        LocalDateTime before = LocalDateTime.now();
+        when(outboundEmailRepository.findDue(any(), any())).thenReturn(List.of(a));
+        doAnswer(invocation -> {
+            verify(outboundEmailRepository).saveAll(List.of(a));
+            assertFalse(a.getNextAttemptAt().isBefore(before.plusMinutes(5)));
+            return null;
+        }).when(mailSender).send(any(SimpleMailMessage[].class));
+
+        dispatcher.dispatch();
+
+        verify(mailSender).send(any(SimpleMailMessage[].class));
+        assertEquals(OutboundEmail.Status.SENT, a.getStatus());
+    }
+
+    //the same confirmation twice in one batch, only the copy that was rejected is retried
+    @Test
+    void identical_emails_fail_separately() {
+        OutboundEmail a = pending(1, "a@example.com");
+        OutboundEmail b = pending(2, "a@example.com");
+        b.setCreatedAt(a.getCreatedAt());
+        when(outboundEmailRepository.findDue(any(), any())).thenReturn(List.of(a, b), List.of());
+        doAnswer(invocation -> {
+            SimpleMailMessage second = invocation.getArgument(1);
+            throw new MailSendException(Map.of(second, new RuntimeException("mailbox unavailable")));
+        }).when(mailSender).send(any(SimpleMailMessage[].class));
+
+        dispatcher.dispatch();
+
+        assertEquals(OutboundEmail.Status.SENT, a.getStatus());
+        assertEquals(OutboundEmail.Status.PENDING, b.getStatus());
+        assertEquals(1, b.getAttempts());
+    }
+
+    @Test
+    void whole_batch_failure_pauses_dispatch() {
+        OutboundEmail a = pending(1, "a@example.com");
+        when(outboundEmailRepository.findDue(any(), any())).thenReturn(List.of(a));
+        doThrow(new MailSendException("Connection refused")).when(mailSender).send(any(SimpleMailMessage[].class));
+
+        dispatcher.dispatch();
+        dispatcher.dispatch();
+
+        //second run is inside the pause, the outbox isn't even polled
+        verify(outboundEmailRepository, times(1)).findDue(any(), any());
+        assertEquals(1, a.getAttempts());
+        assertEquals(OutboundEmail.Status.PENDING, a.getStatus());
+    }
+
+    @Test
+    void gives_up_after_max_attempts() {
+        OutboundEmail a = pending(1, "a@example.com");
+        a.setAttempts(2);
+        when(outboundEmailRepository.findDue(any(), any())).thenReturn(List.of(a));
+        doThrow(new MailSendException("Connection refused")).when(mailSender).send(any(SimpleMailMessage[].class));
+
+        dispatcher.dispatch();
+
+        assertEquals(OutboundEmail.Status.FAILED, a.getStatus());
+        assertEquals(3, a.getAttempts());
+    }
+
+    @Test
+    void backoff_doubles_up_to_the_cap() {
+        assertEquals(Duration.ofSeconds(10), dispatcher.backoff(1));
+        assertEquals(Duration.ofSeconds(20), dispatcher.backoff(2));
+        assertEquals(Duration.ofSeconds(40), dispatcher.backoff(3));
+        assertEquals(Duration.ofMinutes(1), dispatcher.backoff(4));
+    }
+}
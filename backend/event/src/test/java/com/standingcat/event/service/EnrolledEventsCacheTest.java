@@ -0,0 +1,51 @@
+package com.standingcat.event.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EnrolledEventsCacheTest {
+    private final EnrolledEventsCache cache = new EnrolledEventsCache(100, Duration.ofMinutes(30), new SimpleMeterRegistry());
+    private final AtomicInteger loads = new AtomicInteger();
+    private final Function<Long, List<Long>> loader = userId -> {
+        loads.incrementAndGet();
+        return List.of(30L, 10L, 20L);
+    };
+
+    @Test
+    void answers_in_the_order_asked_and_loads_once() {
+        assertEquals(List.of(20L, 10L), cache.enrolledAmong(1L, List.of(20L, 15L, 10L, 20L), loader));
+        assertEquals(List.of(30L), cache.enrolledAmong(1L, List.of(30L, 40L), loader));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void keeps_in_step_with_enroll_and_unenroll() {
+        cache.enrolledAmong(1L, List.of(), loader);
+
+        cache.added(1L, 15L);
+        cache.added(1L, 15L);
+        cache.removed(1L, 30L);
+
+        assertEquals(List.of(10L, 15L, 20L), cache.enrolledAmong(1L, List.of(10L, 15L, 20L, 30L), loader));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void changes_for_users_not_loaded_are_ignored() {
+        cache.added(2L, 99L);
+
+        assertEquals(List.of(), cache.enrolledAmong(2L, List.of(99L), loader));
+        assertEquals(1, loads.get());
+
+        cache.evictAll();
+        cache.enrolledAmong(2L, List.of(10L), loader);
+        assertEquals(2, loads.get());
+    }
+}
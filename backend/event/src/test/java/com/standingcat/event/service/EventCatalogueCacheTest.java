@@ -0,0 +1,110 @@
+package com.standingcat.event.service;
+
+import com.standingcat.event.dto.EventResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventCatalogueCacheTest {
+    private SimpleMeterRegistry meterRegistry;
+    private EventCatalogueCache cache;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new EventCatalogueCache(100, Duration.ofMinutes(1), meterRegistry);
+    }
+
+    private static EventResponse snapshot(Long id, int enrolled) {
+        return new EventResponse(id, "Event " + id, "desc", null, LocalDateTime.of(2030, 1, 1, 10, 0), 10, enrolled, null, 0);
+    }
+
+    @Test
+    void detail_is_loaded_once_until_evicted() {
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get(1L, id -> { loads.incrementAndGet(); return snapshot(id, 0); });
+        cache.get(1L, id -> { loads.incrementAndGet(); return snapshot(id, 0); });
+        assertEquals(1, loads.get());
+
+        //outside a transaction the eviction happens straight away
+        cache.evictEvent(1L);
+        EventResponse reloaded = cache.get(1L, id -> { loads.incrementAndGet(); return snapshot(id, 1); }).orElseThrow();
+
+        assertEquals(2, loads.get());
+        assertEquals(1, reloaded.getCurrentEnrollments());
+    }
+
+    @Test
+    void unknown_event_is_not_cached() {
+        AtomicInteger loads = new AtomicInteger();
+
+        assertTrue(cache.get(9L, id -> { loads.incrementAndGet(); return null; }).isEmpty());
+        assertTrue(cache.get(9L, id -> { loads.incrementAndGet(); return null; }).isEmpty());
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void listing_only_loads_missing_snapshots() {
+        cache.get(1L, id -> snapshot(id, 0));
+        List<Long> requested = new java.util.ArrayList<>();
+
+        Map<Long, EventResponse> result = cache.getAll(List.of(1L, 2L, 3L), missing -> {
+            requested.addAll(missing);
+            Map<Long, EventResponse> loaded = new HashMap<>();
+            missing.forEach(id -> loaded.put(id, snapshot(id, 0)));
+            return loaded;
+        });
+
+        assertEquals(3, result.size());
+        assertEquals(2, requested.size());
+        assertFalse(requested.contains(1L));
+    }
+
+    @Test
+    void bulk_load_racing_an_eviction_is_not_kept() {
+        //an enrollment commits while the listing is reading the old row
+        Map<Long, EventResponse> first = cache.getAll(List.of(2L), missing -> {
+            cache.evictEvent(2L);
+            return Map.of(2L, snapshot(2L, 0));
+        });
+        Map<Long, EventResponse> second = cache.getAll(List.of(2L), missing -> Map.of(2L, snapshot(2L, 1)));
+
+        assertEquals(0, first.get(2L).getCurrentEnrollments());
+        assertEquals(1, second.get(2L).getCurrentEnrollments());
+    }
+
+    @Test
+    void visible_ids_are_reloaded_after_listing_eviction() {
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.visibleIds(() -> { loads.incrementAndGet(); return List.of(1L); });
+        cache.visibleIds(() -> { loads.incrementAndGet(); return List.of(1L); });
+        cache.evictListing();
+        List<Long> ids = cache.visibleIds(() -> { loads.incrementAndGet(); return List.of(1L, 2L); });
+
+        assertEquals(2, loads.get());
+        assertEquals(List.of(1L, 2L), ids);
+    }
+
+    @Test
+    void hits_and_misses_are_published() {
+        cache.get(1L, id -> snapshot(id, 0));
+        cache.get(1L, id -> snapshot(id, 0));
+
+        double hits = meterRegistry.get("cache.gets").tag("cache", "catalogue.events").tag("result", "hit").functionCounter().count();
+        double misses = meterRegistry.get("cache.gets").tag("cache", "catalogue.events").tag("result", "miss").functionCounter().count();
+        assertEquals(1, hits);
+        assertEquals(1, misses);
+    }
+}
@@ -0,0 +1,140 @@
+package com.standingcat.event.service;
+
+import com.standingcat.event.repository.EventRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class EventImageServiceTest {
+    @Mock
+    private EventRepository eventRepository;
+    @Mock
+    private EventCatalogueCache catalogueCache;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @TempDir
+    Path tempDir;
+
+    private Path imagesDir;
+    private Path stagingDir;
+    private EventImageService service;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        imagesDir = tempDir.resolve("images");
+        stagingDir = tempDir.resolve("staging");
+        ImageStore store = new LocalImageStore(imagesDir, "/images/");
+        //no transaction is active, so after-commit work runs straight away on the calling thread
+        service = new EventImageService(store, eventRepository, catalogueCache,
+                new TransactionTemplate(transactionManager), Runnable::run, stagingDir, Duration.ofHours(1),
+                new SimpleMeterRegistry());
+    }
+
+    private MockMultipartFile image() {
+        return new MockMultipartFile("image", "poster.png", "image/png", new byte[]{1, 2, 3});
+    }
+
+    private long storedFiles() throws IOException {
+        if (!Files.exists(imagesDir)) {
+            return 0;
+        }
+        try (var files = Files.walk(imagesDir)) {
+            return files.filter(Files::isRegularFile).count();
+        }
+    }
+
+    @Test
+    void staged_upload_is_stored_and_applied_to_the_event() throws IOException {
+        when(eventRepository.findImagePublicId(1L)).thenReturn(Optional.empty());
+        when(eventRepository.completeImageUpload(eq(1L), anyString(), anyString(), anyString())).thenReturn(1);
+
+        String uploadId = service.stage(image());
+        service.uploadAfterCommit(1L, uploadId, "user_uploads/7", "poster.png");
+
+        ArgumentCaptor<String> url = ArgumentCaptor.forClass(String.class);
+        verify(eventRepository).completeImageUpload(eq(1L), eq(uploadId), url.capture(), anyString());
+        assertTrue(url.getValue().startsWith("/images/user_uploads/7/"));
+        assertTrue(url.getValue().endsWith("poster.png"));
+        assertEquals(1, storedFiles());
+        assertFalse(Files.exists(stagingDir.resolve(uploadId)), "staged file should be removed");
+        verify(catalogueCache).evictEvent(1L);
+    }
+
+    @Test
+    void superseded_upload_is_deleted_from_the_store() throws IOException {
+        when(eventRepository.findImagePublicId(1L)).thenReturn(Optional.empty());
+        when(eventRepository.completeImageUpload(eq(1L), anyString(), anyString(), anyString())).thenReturn(0);
+
+        String uploadId = service.stage(image());
+        service.uploadAfterCommit(1L, uploadId, "user_uploads/7", "poster.png");
+
+        assertEquals(0, storedFiles());
+        verifyNoInteractions(catalogueCache);
+    }
+
+    @Test
+    void previous_image_is_deleted_once_replaced() throws IOException {
+        String first = service.stage(image());
+        when(eventRepository.findImagePublicId(1L)).thenReturn(Optional.empty());
+        when(eventRepository.completeImageUpload(eq(1L), anyString(), anyString(), anyString())).thenReturn(1);
+        service.uploadAfterCommit(1L, first, "user_uploads/7", "poster.png");
+        ArgumentCaptor<String> publicId = ArgumentCaptor.forClass(String.class);
+        verify(eventRepository).completeImageUpload(eq(1L), eq(first), anyString(), publicId.capture());
+
+        when(eventRepository.findImagePublicId(1L)).thenReturn(Optional.of(publicId.getValue()));
+        service.uploadAfterCommit(1L, service.stage(image()), "user_uploads/7", "poster.png");
+
+        assertEquals(1, storedFiles());
+        assertFalse(Files.exists(imagesDir.resolve(publicId.getValue())));
+    }
+
+    @Test
+    void old_staged_files_are_cleaned_up() throws IOException {
+        Path abandoned = Files.write(stagingDir.resolve("abandoned"), new byte[]{1});
+        Files.setLastModifiedTime(abandoned, FileTime.from(Instant.now().minus(Duration.ofHours(2))));
+        Path fresh = Files.write(stagingDir.resolve("fresh"), new byte[]{1});
+
+        service.cleanUpStaging();
+
+        assertFalse(Files.exists(abandoned));
+        assertTrue(Files.exists(fresh));
+    }
+
+    @Test
+    void rejected_upload_is_abandoned_and_its_staged_file_removed() throws IOException {
+        EventImageService busy = new EventImageService(new LocalImageStore(imagesDir, "/images/"), eventRepository,
+                catalogueCache, new TransactionTemplate(transactionManager),
+                task -> { throw new RejectedExecutionException("queue full"); }, stagingDir, Duration.ofHours(1),
+                new SimpleMeterRegistry());
+
+        String uploadId = busy.stage(image());
+        busy.uploadAfterCommit(1L, uploadId, "user_uploads/7", "poster.png");
+
+        verify(eventRepository).abandonImageUpload(1L, uploadId);
+        assertFalse(Files.exists(stagingDir.resolve(uploadId)));
+        assertEquals(0, storedFiles());
+    }
+}
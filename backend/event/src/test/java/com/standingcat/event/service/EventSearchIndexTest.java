@@ -0,0 +1,74 @@
+package com.standingcat.event.service;
+
+import com.standingcat.event.model.Event;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class EventSearchIndexTest {
+    private EventSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new EventSearchIndex(mock(JdbcTemplate.class));
+        index.index(event(1L, "Spring Boot workshop", "Hands-on session", null));
+        index.index(event(2L, "Chess club", "Bring your own board, we talk about Spring openings", null));
+        index.index(event(3L, "Café evening", null, "**Coffee** and [cake](https://example.com)"));
+    }
+
+    private static Event event(Long id, String title, String description, String markdown) {
+        Event event = new Event();
+        event.setId(id);
+        event.setTitle(title);
+        event.setDescription(description);
+        event.setDescriptionMarkdown(markdown);
+        return event;
+    }
+
+    @Test
+    void title_match_ranks_above_description_match() {
+        assertEquals(List.of(1L, 2L), index.search("spring", 10));
+    }
+
+    @Test
+    void matches_word_prefixes_and_folds_accents() {
+        assertEquals(List.of(1L), index.search("work", 10));
+        assertEquals(List.of(3L), index.search("cafe", 10));
+        assertEquals(List.of(3L), index.search("coff", 10));
+    }
+
+    @Test
+    void every_term_has_to_match() {
+        assertEquals(List.of(2L), index.search("spring chess", 10));
+        assertEquals(List.of(), index.search("spring cake", 10));
+    }
+
+    @Test
+    void single_letters_are_not_expanded() {
+        assertEquals(List.of(), index.search("s", 10));
+    }
+
+    @Test
+    void updates_replace_the_old_terms_and_hidden_events_drop_out() {
+        index.index(event(1L, "Kotlin workshop", null, null));
+        assertEquals(List.of(2L), index.search("spring", 10));
+
+        Event hidden = event(2L, "Chess club", null, null);
+        hidden.setHidden(true);
+        index.index(hidden);
+        assertEquals(List.of(), index.search("chess", 10));
+
+        index.remove(3L);
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    void limit_keeps_the_best() {
+        assertEquals(List.of(1L), index.search("spring", 1));
+    }
+}
@@ -2,7 +2,6 @@ package com.standingcat.event.service;
 
 import com.standingcat.event.exception.EventNotFoundException;
 import com.standingcat.event.exception.NoRolePermissionException;
-import com.standingcat.event.exception.UserNotFoundException;
 import com.standingcat.event.model.Event;
 import com.standingcat.event.model.User;
 import com.standingcat.event.repository.EventRepository;
@@ -37,6 +36,30 @@ class EventServiceTest {
     @Mock
     private UserService userService;
 
+    @Mock
+    private SeatCounter seatCounter;
+
+    @Mock
+    private EventCatalogueCache catalogueCache;
+
+    @Mock
+    private EventImageService eventImageService;
+
+    @Mock
+    private WaitlistService waitlistService;
+
+    @Mock
+    private SeatAvailabilityBroadcaster seatAvailability;
+
+    @Mock
+    private EventSearchIndex searchIndex;
+
+    @Mock
+    private MarkdownRenderer markdownRenderer;
+
+    @Mock
+    private EnrolledEventsCache enrolledEvents;
+
     @InjectMocks
     private EventService eventService;
 
@@ -51,34 +74,22 @@ class EventServiceTest {
         roles.add("ROLE_USER");
         roles.add("ROLE_ADMIN");
         admin.setRoles(roles);
-        Event input = new Event();
-        input.setTitle("Fighting Game Tournament");
 
-        when(userService.findById(10L)).thenReturn(Optional.of(admin));
         when(eventRepository.save(any(Event.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
-        Event saved = eventService.createEvent(input, 10L);
+        Event saved = eventService.createEvent("Fighting Game Tournament", "Bracket", null,
+                LocalDateTime.now().plusDays(3), 16, null, admin);
 
         // owner should be set to admin
         assertSame(admin, saved.getOwner());
         assertEquals("Fighting Game Tournament", saved.getTitle());
-        verify(userService).findById(10L);
+        assertEquals(16, saved.getCapacity());
         verify(eventRepository).save(eventCaptor.capture());
 
         Event captured = eventCaptor.getValue();
         assertSame(admin, captured.getOwner());
-    }
-
-    @Test
-    void createEvent_user_not_found() {
-        when(userService.findById(1L)).thenReturn(Optional.empty());
-
-        UserNotFoundException ex = assertThrows(UserNotFoundException.class,
-                () -> eventService.createEvent(new Event(), 1L));
-
-        assertTrue(ex.getMessage().contains("Admin user not found"));
-        verify(userService, times(1)).findById(1L);
-        verifyNoInteractions(eventRepository);
+        //no image, nothing staged
+        verifyNoInteractions(eventImageService);
     }
 
     @Test
@@ -87,13 +98,13 @@ class EventServiceTest {
         user.setId(1L);
         Set<String> roles = new HashSet<>();
         roles.add("ROLE_USER");
-        when(userService.findById(1L)).thenReturn(Optional.of(user));
+        user.setRoles(roles);
 
         NoRolePermissionException ex = assertThrows(NoRolePermissionException.class,
-                () -> eventService.createEvent(new Event(), 1L));
+                () -> eventService.createEvent("Title", "Description", null,
+                        LocalDateTime.now().plusDays(1), 10, null, user));
 
         assertTrue(ex.getMessage().contains("Non-Admins cannot create events."));
-        verify(userService).findById(1L);
         verifyNoInteractions(eventRepository);
     }
 
@@ -0,0 +1,47 @@
+package com.standingcat.event.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MarkdownRendererTest {
+    private final MarkdownRenderer renderer = new MarkdownRenderer(100, new SimpleMeterRegistry());
+
+    @Test
+    void renders_markdown_and_tables() {
+        String html = renderer.render("# Agenda\n\n| Time | Talk |\n|---|---|\n| 10:00 | ~~Opening~~ |\n");
+
+        assertTrue(html.contains("<h1>Agenda</h1>"));
+        assertTrue(html.contains("<table>"));
+        assertTrue(html.contains("<del>Opening</del>"));
+    }
+
+    @Test
+    void raw_html_is_escaped() {
+        String html = renderer.render("Hi <script>alert(1)</script> <img src=x onerror=alert(1)>");
+
+        assertFalse(html.contains("<script>"));
+        assertFalse(html.contains("<img"));
+        assertTrue(html.contains("&lt;script&gt;"));
+    }
+
+    @Test
+    void unsafe_links_are_dropped() {
+        String html = renderer.render("[click](javascript:alert(1)) [site](https://example.com)");
+
+        assertFalse(html.contains("javascript:"));
+        assertTrue(html.contains("href=\"https://example.com\""));
+        assertTrue(html.contains("rel=\"nofollow noopener noreferrer\""));
+    }
+
+    @Test
+    void same_markdown_is_rendered_once() {
+        String first = renderer.render("**bold**");
+
+        assertSame(first, renderer.render("**bold**"));
+        assertEquals(MarkdownRenderer.hash("**bold**"), MarkdownRenderer.hash("**bold**"));
+        assertNull(renderer.render("  "));
+        assertNull(MarkdownRenderer.hash(null));
+    }
+}
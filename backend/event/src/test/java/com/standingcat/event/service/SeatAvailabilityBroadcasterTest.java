@@ -0,0 +1,74 @@
+package com.standingcat.event.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.standingcat.event.dto.SeatAvailability;
+import com.standingcat.event.repository.EventRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+//flush is driven by hand here, the ticker is only started by Spring
+@ExtendWith(MockitoExtension.class)
+class SeatAvailabilityBroadcasterTest {
+    @Mock
+    private EventRepository eventRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+    private SeatAvailabilityBroadcaster broadcaster;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        broadcaster = new SeatAvailabilityBroadcaster(eventRepository, new ObjectMapper(),
+                Duration.ofMillis(500), Duration.ofSeconds(25), Duration.ofMinutes(30), meterRegistry);
+    }
+
+    private double openStreams() {
+        return meterRegistry.get("availability.stream.subscribers").gauge().value();
+    }
+
+    @Test
+    void changes_without_subscribers_cost_nothing() {
+        broadcaster.seatsChanged(1L);
+        broadcaster.flush();
+
+        verifyNoInteractions(eventRepository);
+    }
+
+    @Test
+    void a_burst_of_changes_is_read_once() {
+        broadcaster.subscribe(new SeatAvailability(1L, 10, 3));
+        broadcaster.subscribe(new SeatAvailability(1L, 10, 3));
+        when(eventRepository.findSeatCounts(anyCollection())).thenReturn(List.<Object[]>of(new Object[]{1L, 7, 10}));
+
+        for (int i = 0; i < 4; i++) {
+            broadcaster.seatsChanged(1L);
+        }
+        broadcaster.flush();
+        broadcaster.flush(); //nothing changed since
+
+        verify(eventRepository, times(1)).findSeatCounts(List.of(1L));
+        assertEquals(2, openStreams());
+    }
+
+    @Test
+    void deleted_event_ends_its_streams() {
+        broadcaster.subscribe(new SeatAvailability(2L, 5, 5));
+        when(eventRepository.findSeatCounts(anyCollection())).thenReturn(List.of());
+
+        broadcaster.seatsChanged(2L);
+        broadcaster.flush();
+
+        assertEquals(0, openStreams());
+    }
+}
@@ -0,0 +1,111 @@
+package com.standingcat.event.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SeatCounterTest {
+
+    @Test
+    void untracked_event_is_left_to_the_database() {
+        SeatCounter counter = new SeatCounter(Duration.ofMinutes(1));
+
+        SeatCounter.Reservation reservation = counter.tryReserve(1L);
+
+        assertFalse(reservation.isSoldOut());
+    }
+
+    @Test
+    void unlimited_capacity_is_never_tracked() {
+        SeatCounter counter = new SeatCounter(Duration.ofMinutes(1));
+        counter.prime(1L, null, 500);
+
+        assertFalse(counter.tryReserve(1L).isSoldOut());
+    }
+
+    @Test
+    void reserves_until_sold_out() {
+        SeatCounter counter = new SeatCounter(Duration.ofMinutes(1));
+        counter.prime(1L, 2, 0);
+
+        assertFalse(counter.tryReserve(1L).isSoldOut());
+        assertFalse(counter.tryReserve(1L).isSoldOut());
+        assertTrue(counter.tryReserve(1L).isSoldOut());
+    }
+
+    @Test
+    void cancelled_and_released_seats_come_back() {
+        SeatCounter counter = new SeatCounter(Duration.ofMinutes(1));
+        counter.prime(1L, 1, 0);
+
+        SeatCounter.Reservation reservation = counter.tryReserve(1L);
+        assertTrue(counter.tryReserve(1L).isSoldOut());
+
+        //enrollment rolled back
+        reservation.cancel();
+        assertFalse(counter.tryReserve(1L).isSoldOut());
+
+        //someone un-enrolled
+        counter.release(1L);
+        assertFalse(counter.tryReserve(1L).isSoldOut());
+        assertTrue(counter.tryReserve(1L).isSoldOut());
+    }
+
+    @Test
+    void sold_out_is_not_undone_by_a_stale_cancel() {
+        SeatCounter counter = new SeatCounter(Duration.ofMinutes(1));
+        counter.prime(1L, 5, 0);
+
+        SeatCounter.Reservation reservation = counter.tryReserve(1L);
+        //database disagreed with the counter, then the failed enrollment rolls back
+        counter.soldOut(1L);
+        reservation.cancel();
+
+        assertTrue(counter.tryReserve(1L).isSoldOut());
+    }
+
+    @Test
+    void expired_entry_is_dropped() throws InterruptedException {
+        SeatCounter counter = new SeatCounter(Duration.ofMillis(1));
+        counter.soldOut(1L);
+        Thread.sleep(5);
+
+        assertFalse(counter.tryReserve(1L).isSoldOut());
+    }
+
+    @Test
+    void concurrent_reservations_never_exceed_capacity() throws InterruptedException {
+        SeatCounter counter = new SeatCounter(Duration.ofMinutes(1));
+        counter.prime(1L, 50, 0);
+        AtomicInteger reserved = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1000);
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(16)) {
+            for (int i = 0; i < 1000; i++) {
+                executor.submit(() -> {
+                    try {
+                        start.await();
+                        if (!counter.tryReserve(1L).isSoldOut()) {
+                            reserved.incrementAndGet();
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        done.countDown();
+                    }
+                });
+            }
+            start.countDown();
+            done.await();
+        }
+
+        assertEquals(50, reserved.get());
+    }
+}
@@ -0,0 +1,62 @@
+package com.standingcat.event.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WaitlistQueueTest {
+
+    private static List<Object[]> rows(long... entryAndUser) {
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < entryAndUser.length; i += 2) {
+            rows.add(new Object[]{entryAndUser[i], entryAndUser[i + 1]});
+        }
+        return rows;
+    }
+
+    @Test
+    void head_is_in_entry_order_and_loaded_once() {
+        WaitlistQueue queue = new WaitlistQueue();
+        AtomicInteger loads = new AtomicInteger();
+
+        List<Map.Entry<Long, Long>> head = queue.head(1L, 2, id -> {
+            loads.incrementAndGet();
+            return rows(30, 300, 10, 100, 20, 200);
+        });
+        queue.head(1L, 2, id -> {
+            loads.incrementAndGet();
+            return rows();
+        });
+
+        assertEquals(List.of(Map.entry(10L, 100L), Map.entry(20L, 200L)), head);
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void added_and_removed_keep_a_loaded_line_in_step() {
+        WaitlistQueue queue = new WaitlistQueue();
+        queue.head(1L, 10, id -> rows(10, 100));
+
+        queue.added(1L, 20L, 200L);
+        queue.removed(1L, List.of(10L));
+
+        assertEquals(List.of(Map.entry(20L, 200L)), queue.head(1L, 10, id -> rows()));
+    }
+
+    @Test
+    void empty_line_is_dropped_and_reloaded() {
+        WaitlistQueue queue = new WaitlistQueue();
+        queue.head(1L, 10, id -> rows(10, 100));
+
+        queue.removed(1L, List.of(10L));
+        //not loaded any more, so this is ignored and the next head reads the database
+        queue.added(1L, 20L, 200L);
+
+        assertEquals(List.of(Map.entry(30L, 300L)), queue.head(1L, 10, id -> rows(30, 300)));
+    }
+}